@@ -7,6 +7,7 @@ import android.content.pm.PackageManager;
 import android.os.Bundle;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailabilityLight;
@@ -15,6 +16,7 @@ import com.google.firebase.messaging.FirebaseMessaging;
 
 import java.lang.ref.WeakReference;
 import java.util.List;
+import java.util.Map;
 
 import me.carda.awesome_notifications.core.AwesomeNotifications;
 import me.carda.awesome_notifications.core.AwesomeNotificationsExtension;
@@ -29,16 +31,28 @@ import me.carda.awesome_notifications.core.listeners.AwesomeNotificationEventLis
 import me.carda.awesome_notifications.core.logs.Logger;
 import me.carda.awesome_notifications.core.models.returnedData.ActionReceived;
 import me.carda.awesome_notifications.core.models.returnedData.NotificationReceived;
+import me.carda.awesome_notifications_fcm.core.background.BackgroundExecutorManager;
 import me.carda.awesome_notifications_fcm.core.background.FcmBackgroundExecutor;
 import me.carda.awesome_notifications_fcm.core.broadcasters.receivers.AwesomeFcmEventsReceiver;
+import me.carda.awesome_notifications_fcm.core.interpreters.NotificationCoalescer;
+import me.carda.awesome_notifications_fcm.core.interpreters.RemoteCommand;
+import me.carda.awesome_notifications_fcm.core.interpreters.RemoteCommandRegistry;
 import me.carda.awesome_notifications_fcm.core.licenses.LicenseManager;
+import me.carda.awesome_notifications_fcm.core.listeners.AwesomeFcmSilentDataHandler;
 import me.carda.awesome_notifications_fcm.core.listeners.AwesomeFcmSilentListener;
 import me.carda.awesome_notifications_fcm.core.listeners.AwesomeFcmTokenListener;
+import me.carda.awesome_notifications_fcm.core.managers.ChannelIndexManager;
 import me.carda.awesome_notifications_fcm.core.managers.FcmDefaultsManager;
 import me.carda.awesome_notifications_fcm.core.managers.TokenManager;
+import me.carda.awesome_notifications_fcm.core.metrics.DeliveryLatencyTracker;
+import me.carda.awesome_notifications_fcm.core.metrics.FcmMetricsManager;
 import me.carda.awesome_notifications_fcm.core.mocking_google.NotificationAnalytics;
 import me.carda.awesome_notifications_fcm.core.services.AwesomeFcmService;
 import me.carda.awesome_notifications_fcm.core.services.FcmSilentService;
+import me.carda.awesome_notifications_fcm.core.threads.FcmDelayedExecutor;
+import me.carda.awesome_notifications_fcm.core.threads.NotificationUpdateThrottler;
+import me.carda.awesome_notifications_fcm.core.threads.SilentDataPriority;
+import me.carda.awesome_notifications_fcm.core.threads.SilentDataQueue;
 
 public class AwesomeNotificationsFcm
     implements
@@ -49,7 +63,7 @@ public class AwesomeNotificationsFcm
 
     public static boolean debug = false;
     public boolean isInitialized = false;
-    public static boolean firebaseEnabled = false;
+    public static volatile boolean firebaseEnabled = false;
 
     private final WeakReference<Context> wContext;
 
@@ -71,7 +85,7 @@ public class AwesomeNotificationsFcm
     // *****************************************************************
 
     public static AwesomeNotificationsExtension awesomeFcmExtensions;
-    public static boolean areExtensionsLoaded = false;
+    public static volatile boolean areExtensionsLoaded = false;
 
     public static Class<? extends AwesomeFcmService> awesomeFcmServiceClass;
     public static Class<? extends FcmBackgroundExecutor> awesomeFcmBackgroundExecutorClass;
@@ -80,7 +94,15 @@ public class AwesomeNotificationsFcm
             @NonNull Context context
     ) throws AwesomeNotificationsException {
         if(areExtensionsLoaded) return;
+        synchronized (AwesomeNotificationsFcm.class) {
+            if (areExtensionsLoaded) return;
+            loadExtensions(context);
+        }
+    }
 
+    private static void loadExtensions(
+            @NonNull Context context
+    ) throws AwesomeNotificationsException {
         if(awesomeFcmExtensions == null)
             throw ExceptionFactory
                     .getInstance()
@@ -92,6 +114,17 @@ public class AwesomeNotificationsFcm
 
         awesomeFcmExtensions.loadExternalExtensions(context);
         areExtensionsLoaded = true;
+
+        // Silent data left unprocessed by the previous process is delivered again
+        final Context applicationContext = context.getApplicationContext();
+        FcmDelayedExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                SilentDataQueue
+                        .getInstance()
+                        .replayJournal(applicationContext);
+            }
+        }, 0);
     }
 
 
@@ -127,6 +160,23 @@ public class AwesomeNotificationsFcm
         return this;
     }
 
+    /// While the app is in foreground or background, silent data is first offered
+    /// on the main thread to the silent data handlers. Only silent data that no
+    /// handler reports as handled goes to the background service.
+    public AwesomeNotificationsFcm subscribeOnAwesomeSilentDataHandler(AwesomeFcmSilentDataHandler silentDataHandler){
+        AwesomeFcmEventsReceiver
+                .getInstance()
+                .subscribeOnFcmSilentDataHandler(silentDataHandler);
+        return this;
+    }
+
+    public AwesomeNotificationsFcm unsubscribeOnAwesomeSilentDataHandler(AwesomeFcmSilentDataHandler silentDataHandler){
+        AwesomeFcmEventsReceiver
+                .getInstance()
+                .unsubscribeOnFcmSilentDataHandler(silentDataHandler);
+        return this;
+    }
+
 
     // *****************************************************************
     ///      INTERFACE INITIALIZATIONS
@@ -246,6 +296,172 @@ public class AwesomeNotificationsFcm
     }
 
 
+    // *****************************************************************
+    ///      PUSH PROCESSING
+    // *****************************************************************
+
+    /// Holds notification pushes for windowMillis, so only the latest one with
+    /// the same notification id, or the same collapse key set by the sender,
+    /// is displayed. Zero disables it.
+    public void setNotificationCoalescingWindow(long windowMillis) {
+        NotificationCoalescer
+                .getInstance()
+                .setWindowMillis(windowMillis);
+    }
+
+    /// Limits how fast notifications are sent to the NotificationManager. The same
+    /// notification id is updated at most once every minUpdateIntervalMillis and all
+    /// notifications share maxUpdatesPerSecond. Held updates are replaced by newer
+    /// ones, so the last state is always displayed. Both are zero by default,
+    /// which disables the limits.
+    public void setNotificationUpdateRates(long minUpdateIntervalMillis, int maxUpdatesPerSecond) {
+        NotificationUpdateThrottler
+                .getInstance()
+                .setUpdateRates(minUpdateIntervalMillis, maxUpdatesPerSecond);
+    }
+
+    /// Normal priority silent data are delivered to the background service in
+    /// batches of up to maxBatchSize, waiting at most maxLatencyMillis for the
+    /// batch to fill. A batch size of one or a latency of zero delivers each
+    /// silent data alone.
+    public void setSilentDataBatching(int maxBatchSize, long maxLatencyMillis) {
+        SilentDataQueue
+                .getInstance()
+                .setBatchLimits(maxBatchSize, maxLatencyMillis);
+    }
+
+    /// Silent data are split into lanes by google.priority, or by the silentPriority
+    /// payload hint. Each lane holds up to maxQueueDepth silent data. Every batch runs
+    /// on the same background service, one at a time, so each lane keeps a single
+    /// batch enqueued on it and high priority batches never queue behind several
+    /// normal ones.
+    public void setSilentDataLaneLimits(
+            @NonNull SilentDataPriority priority,
+            int maxBatchSize,
+            long maxLatencyMillis,
+            int maxQueueDepth
+    ) {
+        SilentDataQueue
+                .getInstance()
+                .setLaneLimits(priority, maxBatchSize, maxLatencyMillis, maxQueueDepth);
+    }
+
+    /// Silent data with a syncKey in its payload replaces the older ones with the same
+    /// key still waiting to be dispatched. Enabled by default for every sync key.
+    public void setSyncKeyCoalescingEnabled(boolean enabled) {
+        SilentDataQueue
+                .getInstance()
+                .setSyncKeyCoalescingEnabled(enabled);
+    }
+
+    /// Enables or disables the coalescing of a single sync key, or restores
+    /// the default behavior for it when enabled is null
+    public void setSyncKeyCoalescing(@NonNull String syncKey, @Nullable Boolean enabled) {
+        SilentDataQueue
+                .getInstance()
+                .setSyncKeyCoalescing(syncKey, enabled);
+    }
+
+    /// Keeps the background executor alive for keepAliveMillis after its last
+    /// silent data, so new silent data are dispatched to the warm executor
+    /// instead of starting a new background engine
+    public void setBackgroundExecutorKeepAlive(long keepAliveMillis) {
+        BackgroundExecutorManager
+                .getInstance()
+                .setKeepAlive(keepAliveMillis);
+    }
+
+
+    // *****************************************************************
+    ///      NOTIFICATION CHANNELS
+    // *****************************************************************
+
+    /// Channel keys and states are cached for timeToLiveMillis. Call
+    /// invalidateChannelCache after creating, removing or changing channels
+    /// to make those changes visible to the next push immediately.
+    public void setChannelCacheTimeToLive(long timeToLiveMillis) {
+        ChannelIndexManager
+                .getInstance()
+                .setTimeToLive(timeToLiveMillis);
+    }
+
+    public void invalidateChannelCache() {
+        ChannelIndexManager
+                .getInstance()
+                .invalidate();
+    }
+
+
+    // *****************************************************************
+    ///      REMOTE COMMANDS
+    // *****************************************************************
+
+    /// Registers a command executed when a push contains rpcKey, before and
+    /// without building any notification. Pushes with only remote commands
+    /// are not delivered as notifications or silent data, but they still
+    /// reach the onMessageReceived of the service subclasses.
+    public void registerRemoteCommand(
+            @NonNull String rpcKey,
+            @NonNull RemoteCommand command
+    ) throws AwesomeNotificationsException {
+        RemoteCommandRegistry
+                .getInstance()
+                .registerCommand(rpcKey, command);
+    }
+
+    public void unregisterRemoteCommand(@NonNull String rpcKey) {
+        RemoteCommandRegistry
+                .getInstance()
+                .unregisterCommand(rpcKey);
+    }
+
+
+    // *****************************************************************
+    ///      PERFORMANCE METRICS
+    // *****************************************************************
+
+    /// Returns the latency histograms of each push pipeline stage and the push counters
+    public Map<String, Object> getPipelineMetrics() {
+        return FcmMetricsManager
+                .getInstance()
+                .toMap();
+    }
+
+    public void resetPipelineMetrics() {
+        FcmMetricsManager
+                .getInstance()
+                .reset();
+        DeliveryLatencyTracker
+                .getInstance()
+                .reset();
+        SilentDataQueue
+                .getInstance()
+                .resetMetrics();
+    }
+
+    /// Returns the p50/p95/p99 latencies from FCM send and from device reception
+    /// until display, by notification channel and by FCM priority
+    public Map<String, Object> getDeliveryLatencyMetrics() {
+        return DeliveryLatencyTracker
+                .getInstance()
+                .toMap();
+    }
+
+    /// Returns the queue depth, the batches in flight and the queue wait of each silent data lane
+    public Map<String, Object> getSilentDataLaneMetrics() {
+        return SilentDataQueue
+                .getInstance()
+                .getLaneMetrics();
+    }
+
+    /// Exports each pipeline stage as an android.os.Trace section
+    public void setPipelineTracingEnabled(boolean tracingEnabled) {
+        FcmMetricsManager
+                .getInstance()
+                .setTraceEnabled(tracingEnabled);
+    }
+
+
     // *****************************************************************
     ///      ANALYTIC TRACKING METHODS
     // *****************************************************************
@@ -16,8 +16,11 @@ public interface FcmDefinitions {
     String RPC_DISMISS_BY_CHANNEL = "dismissByChannel";
     String RPC_DISMISS_BY_GROUP = "dismissByGroup";
     String RPC_DISMISS_ALL = "dismissAll";
+    String RPC_DISMISS_BY_MESSAGE_ID = "dismissByMessageId";
 
     String FIREBASE_FLAG_IS_SILENT_DATA = "isSilentData";
+    String SILENT_DATA_PRIORITY = "silentPriority";
+    String SILENT_DATA_SYNC_KEY = "syncKey";
     String FIREBASE_TITLE = "fcm.title";
     String FIREBASE_BODY = "fcm.body";
     String FIREBASE_IMAGE = "fcm.image";
@@ -37,6 +40,10 @@ public interface FcmDefinitions {
 
     String REMAINING_SILENT_DATA = "remainingSilentData";
     String NOTIFICATION_SILENT_DATA = "notificationSilentData";
+    String NOTIFICATION_SILENT_DATA_BATCH = "notificationSilentDataBatch";
+    String NOTIFICATION_SILENT_DATA_BINARY = "notificationSilentDataBinary";
+    String NOTIFICATION_SILENT_DATA_SEQUENCES = "notificationSilentDataSequences";
+    String NOTIFICATION_SILENT_DATA_PRIORITY = "notificationSilentDataPriority";
     String CHANNEL_METHOD_INITIALIZE = "initialize";
     String CHANNEL_METHOD_SILENT_CALLBACK = "silentCallbackReference";
     String CHANNEL_METHOD_PUSH_NEXT_DATA = "pushNext";
@@ -0,0 +1,284 @@
+package me.carda.awesome_notifications_fcm.core.background;
+
+import android.content.Context;
+import android.content.Intent;
+
+import androidx.annotation.NonNull;
+
+import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+import me.carda.awesome_notifications.core.AwesomeNotifications;
+import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
+import me.carda.awesome_notifications.core.exceptions.ExceptionCode;
+import me.carda.awesome_notifications.core.exceptions.ExceptionFactory;
+import me.carda.awesome_notifications.core.logs.Logger;
+import me.carda.awesome_notifications_fcm.core.FcmDefinitions;
+import me.carda.awesome_notifications_fcm.core.builders.FcmNotificationBuilder;
+import me.carda.awesome_notifications_fcm.core.managers.SilentDataJournalManager;
+import me.carda.awesome_notifications_fcm.core.metrics.FcmMetricsManager;
+import me.carda.awesome_notifications_fcm.core.metrics.PipelineStage;
+import me.carda.awesome_notifications_fcm.core.threads.FcmDelayedExecutor;
+
+/// Controls the lifecycle of the background executor. The running executor is
+/// reused by every silent data until it stays idle, with no dispatch running
+/// and no silent intent left unfinished, for the keep alive period. Then it is released through onIdleTimeout, so
+/// bursts separated by short gaps do not pay the background engine startup
+/// again and no engine is dropped without being released. Silent intents are
+/// delivered to the executor outside of the manager lock, so a slow delivery
+/// never holds back other dispatches.
+public final class BackgroundExecutorManager {
+
+    public static final String TAG = "BackgroundExecutorManager";
+
+    public static final String COUNTER_COLD_STARTS = "backgroundExecutorColdStarts";
+    public static final String COUNTER_WARM_DISPATCHES = "backgroundExecutorWarmDispatches";
+
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 60 * 1000L;
+
+    private Class<? extends FcmBackgroundExecutor> executorClass;
+    private Constructor<? extends FcmBackgroundExecutor> executorConstructor;
+
+    private FcmBackgroundExecutor runningInstance;
+    private int activeDispatches;
+    private ScheduledFuture<?> idleCheck;
+    private int idleCheckId;
+
+    private volatile long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+
+    // ************** SINGLETON PATTERN ***********************
+
+    private static BackgroundExecutorManager instance;
+
+    private BackgroundExecutorManager(){}
+    public static synchronized BackgroundExecutorManager getInstance() {
+        if (instance == null)
+            instance = new BackgroundExecutorManager();
+        return instance;
+    }
+
+    // ********************************************************
+
+    public synchronized void setExecutorClass(
+            Class<? extends FcmBackgroundExecutor> executorClass
+    ) {
+        if (this.executorClass == executorClass) return;
+        this.executorClass = executorClass;
+        this.executorConstructor = null;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /// Zero releases the executor as soon as no silent data is being dispatched
+    public synchronized void setKeepAlive(long keepAliveMillis) {
+        this.keepAliveMillis = Math.max(0, keepAliveMillis);
+        if (runningInstance != null && isIdle(runningInstance))
+            scheduleIdleCheck(this.keepAliveMillis);
+    }
+
+    /// Delivers the silent intent to the running executor, creating a new one
+    /// only if there is none alive. The running executor is reused whatever
+    /// isDone reports, as it is only released by the idle check.
+    public void dispatch(
+            @NonNull Context context,
+            @NonNull Intent silentIntent,
+            Long dartCallbackHandle,
+            Long silentCallbackHandle
+    ) throws AwesomeNotificationsException {
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+        FcmBackgroundExecutor executor;
+        boolean isColdStart;
+        PipelineStage stage;
+        long startTime;
+
+        synchronized (this) {
+            isColdStart = runningInstance == null;
+            stage = isColdStart
+                    ? PipelineStage.ExecutorColdStart
+                    : PipelineStage.ExecutorWarmDispatch;
+
+            startTime = metricsManager.beginStage(stage);
+            try {
+                if (isColdStart)
+                    runningInstance = createExecutor(dartCallbackHandle, silentCallbackHandle);
+            } catch (AwesomeNotificationsException exception) {
+                metricsManager.endStage(stage, startTime);
+                throw exception;
+            }
+
+            executor = runningInstance;
+            activeDispatches++;
+            cancelIdleCheck();
+        }
+
+        try {
+            runBackgroundActions(context, executor, silentIntent);
+        } finally {
+            metricsManager.endStage(stage, startTime);
+            synchronized (this) {
+                activeDispatches--;
+                if (runningInstance != null && isIdle(runningInstance))
+                    scheduleIdleCheck(keepAliveMillis);
+            }
+        }
+
+        metricsManager.incrementCounter(isColdStart ? COUNTER_COLD_STARTS : COUNTER_WARM_DISPATCHES);
+    }
+
+    private void runBackgroundActions(
+            @NonNull Context context,
+            @NonNull FcmBackgroundExecutor executor,
+            @NonNull Intent silentIntent
+    ) throws AwesomeNotificationsException {
+        List<Intent> silentIntents =
+                executor.isBatchSupported()
+                        ? Collections.singletonList(silentIntent)
+                        : FcmNotificationBuilder
+                                .getNewBuilder()
+                                .splitSilentBatchIntent(silentIntent);
+
+        boolean isCompletionReported = executor.isCompletionReported();
+        for (Intent intent : silentIntents) {
+            if (isCompletionReported)
+                synchronized (this) {
+                    executor.unfinishedActions++;
+                }
+
+            if(!executor.runBackgroundAction(
+                    context,
+                    intent
+            )){
+                // Silent data not delivered stays journaled to be replayed
+                synchronized (this) {
+                    if (isCompletionReported)
+                        executor.unfinishedActions--;
+                    if (runningInstance == executor)
+                        runningInstance = null;
+                }
+                throw ExceptionFactory
+                        .getInstance()
+                        .createNewAwesomeException(
+                                TAG,
+                                ExceptionCode.CODE_BACKGROUND_EXECUTION_EXCEPTION,
+                                "The background executor could not be started.",
+                                ExceptionCode.DETAILED_INSUFFICIENT_REQUIREMENTS
+                                        +".backgroundExecutor.run");
+            }
+
+            if (!isCompletionReported)
+                acknowledge(context, intent);
+        }
+    }
+
+    /// Called by the executor once a silent intent was handled
+    void onActionFinished(
+            @NonNull Context context,
+            @NonNull FcmBackgroundExecutor executor,
+            @NonNull Intent silentIntent
+    ) {
+        synchronized (this) {
+            if (executor.unfinishedActions > 0)
+                executor.unfinishedActions--;
+            if (executor == runningInstance && isIdle(executor))
+                scheduleIdleCheck(keepAliveMillis);
+        }
+        acknowledge(context, silentIntent);
+    }
+
+    private void acknowledge(@NonNull Context context, @NonNull Intent silentIntent) {
+        SilentDataJournalManager
+                .getInstance()
+                .acknowledge(
+                        context,
+                        silentIntent.getLongArrayExtra(FcmDefinitions.NOTIFICATION_SILENT_DATA_SEQUENCES));
+    }
+
+    private boolean isIdle(@NonNull FcmBackgroundExecutor executor) {
+        return activeDispatches == 0 && executor.unfinishedActions == 0;
+    }
+
+    @NonNull
+    private FcmBackgroundExecutor createExecutor(
+            Long dartCallbackHandle,
+            Long silentCallbackHandle
+    ) throws AwesomeNotificationsException {
+        if(executorClass == null)
+            throw ExceptionFactory
+                    .getInstance()
+                    .createNewAwesomeException(
+                            TAG,
+                            ExceptionCode.CODE_INITIALIZATION_EXCEPTION,
+                            "There is no fcm background executor available to run.",
+                            ExceptionCode.DETAILED_INSUFFICIENT_REQUIREMENTS
+                                    +".fcmBackgroundExecutorClass");
+
+        try {
+            if (executorConstructor == null)
+                executorConstructor = executorClass.getConstructor();
+
+            FcmBackgroundExecutor executor = executorConstructor.newInstance();
+            executor.dartCallbackHandle = dartCallbackHandle;
+            executor.silentCallbackHandle = silentCallbackHandle;
+            return executor;
+
+        } catch (ReflectiveOperationException e) {
+            throw ExceptionFactory
+                    .getInstance()
+                    .createNewAwesomeException(
+                            TAG,
+                            ExceptionCode.CODE_BACKGROUND_EXECUTION_EXCEPTION,
+                            String.format("%s", e.getLocalizedMessage()),
+                            e);
+        }
+    }
+
+    private void scheduleIdleCheck(long delayMillis) {
+        cancelIdleCheck();
+        final int checkId = idleCheckId;
+        idleCheck = FcmDelayedExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (BackgroundExecutorManager.this) {
+                    // Replaced by a newer check while waiting to run
+                    if (checkId != idleCheckId) return;
+                    idleCheck = null;
+                }
+                releaseIdleExecutor();
+            }
+        }, delayMillis);
+    }
+
+    private void cancelIdleCheck() {
+        idleCheckId++;
+        if (idleCheck == null) return;
+        idleCheck.cancel(false);
+        idleCheck = null;
+    }
+
+    /// Releases the running executor if it has no silent data being dispatched
+    /// or unfinished. Otherwise, the last one to finish schedules a new idle check.
+    boolean releaseIdleExecutor() {
+        FcmBackgroundExecutor idleExecutor;
+        synchronized (this) {
+            if (runningInstance == null || !isIdle(runningInstance)) return false;
+
+            idleExecutor = runningInstance;
+            runningInstance = null;
+            cancelIdleCheck();
+        }
+
+        if (AwesomeNotifications.debug)
+            Logger.d(TAG, "Background executor released after being idle");
+
+        try {
+            idleExecutor.onIdleTimeout();
+        } catch (Exception exception) {
+            Logger.e(TAG, "Background executor could not be released: " + exception.getMessage());
+        }
+        return true;
+    }
+}
@@ -3,79 +3,86 @@ package me.carda.awesome_notifications_fcm.core.background;
 import android.content.Context;
 import android.content.Intent;
 
+import androidx.annotation.NonNull;
+
 import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
-import me.carda.awesome_notifications.core.exceptions.ExceptionCode;
-import me.carda.awesome_notifications.core.exceptions.ExceptionFactory;
 
 public abstract class FcmBackgroundExecutor {
     private static final String TAG = "FcmBackgroundExecutor";
 
-    private static FcmBackgroundExecutor runningInstance;
-
     protected Long dartCallbackHandle = 0L;
     protected Long silentCallbackHandle = 0L;
 
-    private static Class<? extends FcmBackgroundExecutor> awesomeBackgroundExecutorClass;
+    // Silent intents not reported as finished yet, guarded by BackgroundExecutorManager
+    int unfinishedActions;
 
     public static void setBackgroundExecutorClass (
             Class<? extends FcmBackgroundExecutor> awesomeBackgroundExecutorClass
     ){
-        FcmBackgroundExecutor.awesomeBackgroundExecutorClass =
-                awesomeBackgroundExecutorClass;
+        BackgroundExecutorManager
+                .getInstance()
+                .setExecutorClass(awesomeBackgroundExecutorClass);
     }
 
+    /// Kept for executors that track their own work. The running executor is
+    /// reused until it is released through onIdleTimeout, whatever it reports.
     public abstract boolean isDone();
     public abstract boolean runBackgroundAction(Context context, Intent silentIntent);
 
+    /// Executors able to deliver a whole silent data batch in one Dart callback
+    /// must return true and read it with buildSilentDataListFromIntent.
+    /// Otherwise, batches are split and each silent data is delivered apart.
+    public boolean isBatchSupported() {
+        return false;
+    }
+
+    /// Executors that keep handling the silent data after runBackgroundAction
+    /// returns, as the ones running it in Dart, must return true and call
+    /// finishBackgroundAction once each silent intent was handled, even if it
+    /// failed. Its silent data stays journaled until then, and the executor is
+    /// not released while any silent intent is unfinished. Otherwise, the silent
+    /// data is considered processed as soon as runBackgroundAction returns.
+    public boolean isCompletionReported() {
+        return false;
+    }
+
+    /// Reports that the silent intent received by runBackgroundAction was
+    /// handled, so its silent data is removed from the journal
+    protected final void finishBackgroundAction(
+            @NonNull Context context,
+            @NonNull Intent silentIntent
+    ) {
+        BackgroundExecutorManager
+                .getInstance()
+                .onActionFinished(context, this, silentIntent);
+    }
+
+    /// Called once the executor stayed idle for the keep alive period, with no
+    /// silent data being dispatched to it or unfinished, and was discarded. Executors should
+    /// keep their background engine running until then and release it here, so
+    /// later silent data reuse the warm engine.
+    public void onIdleTimeout() {
+    }
+
+    /// Time an idle executor is kept alive waiting for new silent data
+    public static long getKeepAliveMillis() {
+        return BackgroundExecutorManager
+                .getInstance()
+                .getKeepAliveMillis();
+    }
+
     public static void runBackgroundExecutor(
         Context context,
         Intent silentIntent,
         Long dartCallbackHandle,
         Long silentCallbackHandle
     ) throws AwesomeNotificationsException {
-
-        try {
-            if(awesomeBackgroundExecutorClass == null)
-                throw ExceptionFactory
-                        .getInstance()
-                        .createNewAwesomeException(
-                                TAG,
-                                ExceptionCode.CODE_INITIALIZATION_EXCEPTION,
-                                "There is no fcm background executor available to run.",
-                                ExceptionCode.DETAILED_INSUFFICIENT_REQUIREMENTS
-                                        +".fcmBackgroundExecutorClass");
-
-            if(runningInstance == null || runningInstance.isDone()) {
-                runningInstance =
-                        awesomeBackgroundExecutorClass.newInstance();
-
-                runningInstance.dartCallbackHandle = dartCallbackHandle;
-                runningInstance.silentCallbackHandle = silentCallbackHandle;
-            }
-
-            if(!runningInstance.runBackgroundAction(
-                    context,
-                    silentIntent
-            )){
-                runningInstance = null;
-                throw ExceptionFactory
-                        .getInstance()
-                        .createNewAwesomeException(
-                                TAG,
-                                ExceptionCode.CODE_BACKGROUND_EXECUTION_EXCEPTION,
-                                "The background executor could not be started.",
-                                ExceptionCode.DETAILED_INSUFFICIENT_REQUIREMENTS
-                                        +".backgroundExecutor.run");
-            }
-
-        } catch (IllegalAccessException | InstantiationException e) {
-            throw ExceptionFactory
-                    .getInstance()
-                    .createNewAwesomeException(
-                            TAG,
-                            ExceptionCode.CODE_BACKGROUND_EXECUTION_EXCEPTION,
-                            String.format("%s", e.getLocalizedMessage()),
-                            e);
-        }
+        BackgroundExecutorManager
+                .getInstance()
+                .dispatch(
+                        context,
+                        silentIntent,
+                        dartCallbackHandle,
+                        silentCallbackHandle);
     }
 }
@@ -2,18 +2,42 @@ package me.carda.awesome_notifications_fcm.core.broadcasters.broadcasters;
 
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.app.JobIntentService;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.carda.awesome_notifications.core.AwesomeNotifications;
+import me.carda.awesome_notifications.core.enumerators.NotificationLifeCycle;
+import me.carda.awesome_notifications.core.logs.Logger;
+import me.carda.awesome_notifications_fcm.core.broadcasters.receivers.AwesomeFcmEventsReceiver;
 import me.carda.awesome_notifications_fcm.core.builders.FcmNotificationBuilder;
 import me.carda.awesome_notifications_fcm.core.managers.TokenManager;
+import me.carda.awesome_notifications_fcm.core.metrics.FcmMetricsManager;
+import me.carda.awesome_notifications_fcm.core.metrics.PipelineStage;
 import me.carda.awesome_notifications_fcm.core.models.SilentDataModel;
 import me.carda.awesome_notifications_fcm.core.services.FcmSilentService;
+import me.carda.awesome_notifications_fcm.core.threads.FcmDelayedExecutor;
+import me.carda.awesome_notifications_fcm.core.threads.SilentDataPriority;
+import me.carda.awesome_notifications_fcm.core.threads.SilentDataQueue;
 
 public class FcmBroadcaster {
     private static final String TAG = "FcmBroadcaster";
 
+    private static final long SILENT_HANDLERS_TIMEOUT_MILLIS = 1000;
+
+    private static final int HANDLING_PENDING = 0;
+    private static final int HANDLING_STARTED = 1;
+    private static final int HANDLING_FINISHED = 2;
+    private static final int HANDLING_CANCELLED = 3;
+    private static final int HANDLING_ABANDONED = 4;
+
     public static void SendBroadcastNewFcmToken(@NonNull String token){
         TokenManager
                 .getInstance()
@@ -21,12 +45,147 @@ public class FcmBroadcaster {
     }
 
     public static void SendBroadcastSilentData(Context context, SilentDataModel silentData) {
+        SendBroadcastSilentData(context, silentData, SilentDataPriority.Normal);
+    }
+
+    /// While the app is alive, the silent data is first offered to the silent
+    /// data handlers. Only if none of them handles it, it follows the background
+    /// job path.
+    public static void SendBroadcastSilentData(
+            Context context,
+            SilentDataModel silentData,
+            @NonNull SilentDataPriority priority
+    ) {
+        if (SendSilentDataToHandlers(context, silentData, priority)) return;
+        SendSilentDataToQueue(context, silentData, priority);
+    }
+
+    private static void SendSilentDataToQueue(
+            Context context,
+            SilentDataModel silentData,
+            @NonNull SilentDataPriority priority
+    ) {
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+        long startTime = metricsManager.beginStage(PipelineStage.SilentJobDelivery);
+        try {
+            SilentDataQueue
+                    .getInstance()
+                    .offer(context, silentData, priority);
+        } finally {
+            metricsManager.endStage(PipelineStage.SilentJobDelivery, startTime);
+        }
+    }
+
+    /// Runs the silent data handlers on the main thread and returns true if the
+    /// silent data needs nothing else from the caller. The caller waits at most
+    /// the handlers timeout: handlers not started by then are skipped, and
+    /// handlers still running are left to finish on their own, sending the
+    /// silent data to the background job if none of them handles it.
+    private static boolean SendSilentDataToHandlers(
+            final Context context,
+            final SilentDataModel silentData,
+            @NonNull final SilentDataPriority priority
+    ) {
+        final AwesomeFcmEventsReceiver eventsReceiver = AwesomeFcmEventsReceiver.getInstance();
+        if (eventsReceiver.isFcmSilentHandlersEmpty()) return false;
+
+        NotificationLifeCycle lifeCycle = AwesomeNotifications.getApplicationLifeCycle();
+        if (lifeCycle != NotificationLifeCycle.Foreground && lifeCycle != NotificationLifeCycle.Background)
+            return false;
+
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+        long startTime = metricsManager.beginStage(PipelineStage.SilentListenerDelivery);
+        try {
+            if (Looper.myLooper() == Looper.getMainLooper())
+                return HandleSilentData(eventsReceiver, silentData);
+
+            final AtomicInteger state = new AtomicInteger(HANDLING_PENDING);
+            final boolean[] isHandled = new boolean[1];
+            final CountDownLatch handled = new CountDownLatch(1);
+
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!state.compareAndSet(HANDLING_PENDING, HANDLING_STARTED)) return;
+
+                    isHandled[0] = HandleSilentData(eventsReceiver, silentData);
+                    if (state.compareAndSet(HANDLING_STARTED, HANDLING_FINISHED)) {
+                        handled.countDown();
+                        return;
+                    }
+
+                    // The push thread stopped waiting, so the fallback is done here,
+                    // keeping the journal writes out of the main thread
+                    if (!isHandled[0])
+                        FcmDelayedExecutor.schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                SendSilentDataToQueue(context, silentData, priority);
+                            }
+                        }, 0);
+                }
+            });
+
+            return AwaitSilentDataHandlers(state, handled) || isHandled[0];
+
+        } finally {
+            metricsManager.endStage(PipelineStage.SilentListenerDelivery, startTime);
+        }
+    }
+
+    /// Returns true if the handlers were abandoned while running, false if they
+    /// were cancelled or if they finished, with their result in isHandled
+    private static boolean AwaitSilentDataHandlers(
+            @NonNull AtomicInteger state,
+            @NonNull CountDownLatch handled
+    ) {
+        try {
+            if (handled.await(SILENT_HANDLERS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                return false;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (state.compareAndSet(HANDLING_PENDING, HANDLING_CANCELLED)) {
+            Logger.w(TAG, "Main thread is busy, silent data sent to the background job instead");
+            return false;
+        }
+
+        if (state.compareAndSet(HANDLING_STARTED, HANDLING_ABANDONED)) {
+            Logger.w(TAG, "Silent data handlers are taking too long, they are no longer awaited");
+            return true;
+        }
+
+        // Finished right after the timeout
+        return false;
+    }
+
+    private static boolean HandleSilentData(
+            @NonNull AwesomeFcmEventsReceiver eventsReceiver,
+            @NonNull SilentDataModel silentData
+    ) {
+        try {
+            return eventsReceiver.handleSilentData(silentData);
+        } catch (Exception exception) {
+            Logger.e(TAG, "Silent data handlers failed, using the background job instead: " + exception.getMessage());
+            return false;
+        }
+    }
+
+    public static void SendBroadcastSilentDataBatch(
+            Context context,
+            byte[][] payloads,
+            @Nullable long[] journalSequences,
+            @NonNull String priority
+    ) {
         Intent serviceIntent =
                 FcmNotificationBuilder
                         .getNewBuilder()
-                        .buildSilentIntentFromSilentModel(
+                        .buildSilentIntentFromBatch(
                                 context,
-                                silentData,
+                                payloads,
+                                journalSequences,
+                                priority,
                                 FcmSilentService.class);
 
         JobIntentService.enqueueWork(
@@ -1,14 +1,16 @@
 package me.carda.awesome_notifications_fcm.core.broadcasters.receivers;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import me.carda.awesome_notifications.core.AwesomeNotifications;
 import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
 import me.carda.awesome_notifications.core.logs.Logger;
 import me.carda.awesome_notifications.core.utils.StringUtils;
+import me.carda.awesome_notifications_fcm.core.listeners.AwesomeFcmSilentDataHandler;
 import me.carda.awesome_notifications_fcm.core.listeners.AwesomeFcmSilentListener;
 import me.carda.awesome_notifications_fcm.core.listeners.AwesomeFcmTokenListener;
 import me.carda.awesome_notifications_fcm.core.models.SilentDataModel;
@@ -38,6 +40,9 @@ public class AwesomeFcmEventsReceiver {
     public boolean isFcmSilentListenersEmpty(){
         return notificationSilentListeners.isEmpty();
     }
+    public boolean isFcmSilentHandlersEmpty(){
+        return silentDataHandlers.isEmpty();
+    }
 
     // ********************************************************
 
@@ -45,7 +50,7 @@ public class AwesomeFcmEventsReceiver {
 
     /// **************  OBSERVER PATTERN  *********************
 
-    static List<AwesomeFcmTokenListener> notificationTokenListeners = new ArrayList<>();
+    static List<AwesomeFcmTokenListener> notificationTokenListeners = new CopyOnWriteArrayList<>();
     public AwesomeFcmEventsReceiver subscribeOnFcmEvents(AwesomeFcmTokenListener listener) {
         notificationTokenListeners.add(listener);
 
@@ -65,7 +70,7 @@ public class AwesomeFcmEventsReceiver {
 
     // ********************************************************
 
-    static List<AwesomeFcmSilentListener> notificationSilentListeners = new ArrayList<>();
+    static List<AwesomeFcmSilentListener> notificationSilentListeners = new CopyOnWriteArrayList<>();
     public AwesomeFcmEventsReceiver subscribeOnFcmSilentDataEvents(AwesomeFcmSilentListener listener) {
         notificationSilentListeners.add(listener);
 
@@ -85,6 +90,26 @@ public class AwesomeFcmEventsReceiver {
 
     // ********************************************************
 
+    static List<AwesomeFcmSilentDataHandler> silentDataHandlers = new CopyOnWriteArrayList<>();
+    public AwesomeFcmEventsReceiver subscribeOnFcmSilentDataHandler(AwesomeFcmSilentDataHandler handler) {
+        silentDataHandlers.add(handler);
+
+        if(AwesomeNotifications.debug)
+            Logger.d(TAG, handler.getClass().getSimpleName() + " subscribed to handle FCM silent data");
+
+        return this;
+    }
+    public AwesomeFcmEventsReceiver unsubscribeOnFcmSilentDataHandler(AwesomeFcmSilentDataHandler handler) {
+        silentDataHandlers.remove(handler);
+
+        if(AwesomeNotifications.debug)
+            Logger.d(TAG, handler.getClass().getSimpleName() + " unsubscribed from FCM silent data");
+
+        return this;
+    }
+
+    // ********************************************************
+
     public void addNewFcmTokenEvent(@Nullable String token) {
         if(AwesomeNotifications.debug && notificationTokenListeners.isEmpty())
             Logger.e(TAG, "New fcm token event ignored, as there is no listeners waiting for new fcm events");
@@ -108,4 +133,12 @@ public class AwesomeFcmEventsReceiver {
         for (AwesomeFcmSilentListener listener : notificationSilentListeners)
             listener.onNewSilentDataReceived(silentData);
     }
+
+    /// Offers the silent data to each handler until one of them handles it.
+    /// Must be called on the main thread.
+    public boolean handleSilentData(@NonNull SilentDataModel silentData) throws AwesomeNotificationsException {
+        for (AwesomeFcmSilentDataHandler handler : silentDataHandlers)
+            if (handler.onSilentDataReceived(silentData)) return true;
+        return false;
+    }
 }
@@ -8,12 +8,12 @@ import android.os.Bundle;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.google.common.reflect.TypeToken;
 import com.google.firebase.messaging.NotificationParams;
 import com.google.firebase.messaging.RemoteMessage;
-import com.google.gson.Gson;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,14 +23,17 @@ import me.carda.awesome_notifications.core.enumerators.NotificationLayout;
 import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
 import me.carda.awesome_notifications.core.exceptions.ExceptionCode;
 import me.carda.awesome_notifications.core.exceptions.ExceptionFactory;
-import me.carda.awesome_notifications.core.managers.ChannelManager;
+import me.carda.awesome_notifications.core.logs.Logger;
 import me.carda.awesome_notifications.core.models.NotificationModel;
-import me.carda.awesome_notifications.core.utils.JsonUtils;
 import me.carda.awesome_notifications.core.utils.ListUtils;
 import me.carda.awesome_notifications.core.utils.MapUtils;
 import me.carda.awesome_notifications.core.utils.StringUtils;
 import me.carda.awesome_notifications_fcm.core.FcmDefinitions;
+import me.carda.awesome_notifications_fcm.core.managers.ChannelIndexManager;
 import me.carda.awesome_notifications_fcm.core.models.SilentDataModel;
+import me.carda.awesome_notifications_fcm.core.utils.FcmBinaryCodec;
+import me.carda.awesome_notifications_fcm.core.utils.FcmDataView;
+import me.carda.awesome_notifications_fcm.core.utils.FcmJsonDecoder;
 
 
 public class FcmNotificationBuilder {
@@ -60,24 +63,28 @@ public class FcmNotificationBuilder {
             @NonNull RemoteMessage remoteMessage,
             @NonNull NotificationParams notificationParams
     ) throws AwesomeNotificationsException {
+        return buildNotificationFromExtras(
+                context,
+                notificationId,
+                remoteMessage,
+                notificationParams,
+                FcmDataView.payloadOf(remoteMessage.getData()));
+    }
 
-        Map<String, String> remoteData = remoteMessage.getData();
-        Map<String, Object> awesomeData, androidCustomData = null;
-
-        remoteData.remove(FcmDefinitions.NOTIFICATION_MODEL_IOS);
+    /// The remote data is only read, so the same RemoteMessage can be
+    /// delivered untouched to onMessageReceived
+    public NotificationModel buildNotificationFromExtras(
+            @NonNull Context context,
+            @NonNull int notificationId,
+            @NonNull RemoteMessage remoteMessage,
+            @NonNull NotificationParams notificationParams,
+            @NonNull FcmDataView remoteData
+    ) throws AwesomeNotificationsException {
 
-        if(remoteData.containsKey(Definitions.NOTIFICATION_MODEL_CONTENT)) {
-            if (remoteData.containsKey(FcmDefinitions.NOTIFICATION_MODEL_ANDROID)) {
-                androidCustomData = JsonUtils.fromJson(remoteData.get(FcmDefinitions.NOTIFICATION_MODEL_ANDROID));
-            }
-            awesomeData = receiveAwesomeNotificationContent(notificationId, remoteMessage, remoteData);
-            if (androidCustomData != null) {
-                awesomeData = new HashMap<String, Object>(MapUtils.deepMerge(awesomeData, androidCustomData));
-            }
-        }
-        else {
-            awesomeData = receiveStandardNotificationContent(notificationId, context, remoteMessage);
-        }
+        Map<String, Object> awesomeData =
+                remoteData.getSection(Definitions.NOTIFICATION_MODEL_CONTENT) != null
+                        ? receiveAwesomeNotificationContent(notificationId, remoteMessage, remoteData)
+                        : receiveStandardNotificationContent(notificationId, context, remoteMessage, remoteData);
 
         NotificationModel notificationModel = new NotificationModel();
         return notificationModel.fromMap(awesomeData);
@@ -86,26 +93,36 @@ public class FcmNotificationBuilder {
     private Map<String, Object> receiveAwesomeNotificationContent(
             @NonNull int notificationId,
             @NonNull RemoteMessage remoteMessage,
-            @NonNull Map<String, String> remoteData
+            @NonNull FcmDataView remoteData
     ) throws AwesomeNotificationsException {
-        RemoteMessage.Notification remoteNotification = remoteMessage.getNotification();
-        Map<String, String> localRemoteData = new HashMap<>(remoteData);
+        return buildAwesomeContent(
+                remoteData,
+                extractFcmNotificationIntoAwesome(
+                        notificationId, remoteData, remoteMessage.getNotification()));
+    }
+
+    /// Decodes each section once into the final map and then streams the
+    /// Android overrides over it, without intermediate copies or merges
+    @NonNull
+    Map<String, Object> buildAwesomeContent(
+            @NonNull FcmDataView remoteData,
+            @NonNull Map<String, Object> originalNotificationData
+    ) throws AwesomeNotificationsException {
+        String androidOverrides = remoteData.getSection(FcmDefinitions.NOTIFICATION_MODEL_ANDROID);
 
         Map<String, Object> parsedNotificationContent =
-                extractNotificationData(Definitions.NOTIFICATION_MODEL_CONTENT, localRemoteData);
+                extractNotificationData(Definitions.NOTIFICATION_MODEL_CONTENT, remoteData);
         Map<String, Object> parsedSchedule =
-                extractNotificationData(Definitions.NOTIFICATION_MODEL_SCHEDULE, localRemoteData);
+                extractNotificationData(Definitions.NOTIFICATION_MODEL_SCHEDULE, remoteData);
         List<Map<String, Object>> parsedActionButtons =
-                extractNotificationDataList(Definitions.NOTIFICATION_MODEL_BUTTONS, localRemoteData);
+                extractNotificationDataList(Definitions.NOTIFICATION_MODEL_BUTTONS, remoteData);
         Map<String, Object> parsedLocalizations =
-                extractNotificationData(Definitions.NOTIFICATION_MODEL_LOCALIZATIONS, localRemoteData);
+                extractNotificationData(Definitions.NOTIFICATION_MODEL_LOCALIZATIONS, remoteData);
 
-        Map<String, Object> originalNotificationData =
-                extractFcmNotificationIntoAwesome(notificationId, remoteMessage, remoteNotification);
+        if (parsedNotificationContent == null)
+            parsedNotificationContent = new HashMap<>();
 
-        parsedNotificationContent = MapUtils.deepMerge(
-                parsedNotificationContent,
-                originalNotificationData);
+        mergeInto(parsedNotificationContent, originalNotificationData);
 
         Map<String, Object> parsedRemoteMessage = new HashMap<>();
         parsedRemoteMessage.put(Definitions.NOTIFICATION_MODEL_CONTENT, parsedNotificationContent);
@@ -119,53 +136,105 @@ public class FcmNotificationBuilder {
         if(!MapUtils.isNullOrEmpty(parsedLocalizations))
             parsedRemoteMessage.put(Definitions.NOTIFICATION_MODEL_LOCALIZATIONS, parsedLocalizations);
 
+        if (androidOverrides != null)
+            applyAndroidOverrides(parsedRemoteMessage, androidOverrides);
+
         return parsedRemoteMessage;
     }
 
+    private void applyAndroidOverrides(
+            @NonNull Map<String, Object> parsedRemoteMessage,
+            @NonNull String androidOverrides
+    ) throws AwesomeNotificationsException {
+        try {
+            FcmJsonDecoder.decodeInto(parsedRemoteMessage, androidOverrides);
+        } catch (Exception exception) {
+            throw ExceptionFactory
+                    .getInstance()
+                    .createNewAwesomeException(
+                            TAG,
+                            ExceptionCode.CODE_INVALID_ARGUMENTS,
+                            "Invalid Firebase notification content "+FcmDefinitions.NOTIFICATION_MODEL_ANDROID,
+                            ExceptionCode.DETAILED_INVALID_ARGUMENTS+".fcm.applyAndroidOverrides",
+                            exception);
+        }
+    }
+
+    /// Same rules of MapUtils.deepMerge, applied directly over target
+    @SuppressWarnings("unchecked")
+    private static void mergeInto(
+            @NonNull Map<String, Object> target,
+            @NonNull Map<String, Object> overrides
+    ) {
+        for (Map.Entry<String, Object> entry : overrides.entrySet()) {
+            Object current = target.get(entry.getKey());
+            Object override = entry.getValue();
+
+            if (override instanceof Map && current instanceof Map) {
+                if (current instanceof FcmDataView) {
+                    current = new HashMap<String, Object>((FcmDataView) current);
+                    target.put(entry.getKey(), current);
+                }
+                mergeInto((Map<String, Object>) current, (Map<String, Object>) override);
+            }
+
+            else if (override instanceof List && current instanceof List) {
+                List<Object> currentList = (List<Object>) current;
+                for (Object element : (List<Object>) override)
+                    if (!currentList.contains(element))
+                        currentList.add(element);
+            }
+
+            else
+                target.put(entry.getKey(), override);
+        }
+    }
+
     private Map<String, Object>  receiveStandardNotificationContent(
             @NonNull int notificationId,
             @NonNull Context context,
-            @NonNull RemoteMessage remoteMessage
+            @NonNull RemoteMessage remoteMessage,
+            @NonNull FcmDataView remoteData
     ) throws AwesomeNotificationsException {
         RemoteMessage.Notification remoteNotification = remoteMessage.getNotification();
 
         Map<String, Object> contentData =
-                extractFcmNotificationIntoAwesome(notificationId, remoteMessage, remoteNotification);
+                extractFcmNotificationIntoAwesome(notificationId, remoteData, remoteNotification);
 
         if (!contentData.containsKey(Definitions.NOTIFICATION_CHANNEL_KEY)){
             String channelKey = getFirstAvailableChannelKey(context);
             contentData.put(Definitions.NOTIFICATION_CHANNEL_KEY, channelKey);
         }
 
-        Map<String, String> payload = remoteMessage.getData();
-        if(!payload.isEmpty()){
-            contentData.put(Definitions.NOTIFICATION_PAYLOAD, payload);
-        }
-
         Map<String, Object> parsedRemoteMessage = new HashMap<>();
         parsedRemoteMessage.put(Definitions.NOTIFICATION_MODEL_CONTENT, contentData);
         return parsedRemoteMessage;
     }
 
     private String getFirstAvailableChannelKey(Context context) throws AwesomeNotificationsException {
-        return ChannelManager
+        String channelKey = ChannelIndexManager
                 .getInstance()
-                .listChannels(context)
-                .get(0)
-                .channelKey;
+                .getDefaultChannelKey(context);
+
+        if (channelKey == null)
+            throw ExceptionFactory
+                    .getInstance()
+                    .createNewAwesomeException(
+                            TAG,
+                            ExceptionCode.CODE_INVALID_ARGUMENTS,
+                            "There is no notification channel available to display the Firebase notification",
+                            ExceptionCode.DETAILED_INVALID_ARGUMENTS+".fcm.channelKey");
+        return channelKey;
     }
 
     @NonNull
     private Map<String, Object> extractFcmNotificationIntoAwesome(
             @Nullable int notificationId,
-            @Nullable RemoteMessage remoteMessage,
+            @NonNull FcmDataView remoteData,
             @Nullable RemoteMessage.Notification remoteNotification
     ){
         Map<String, Object> parsedData = new HashMap<>();
 
-        if(remoteMessage == null)
-            return parsedData;
-
         if(remoteNotification != null){
 
             parsedData.put(Definitions.NOTIFICATION_ID, notificationId);
@@ -196,29 +265,22 @@ public class FcmNotificationBuilder {
             }
         }
 
-        Map<String, String> payload = remoteMessage.getData();
-
-        payload.remove(Definitions.NOTIFICATION_MODEL_CONTENT);
-        payload.remove(Definitions.NOTIFICATION_MODEL_SCHEDULE);
-        payload.remove(Definitions.NOTIFICATION_MODEL_BUTTONS);
-        payload.remove(Definitions.NOTIFICATION_MODEL_LOCALIZATIONS);
-        payload.remove(FcmDefinitions.NOTIFICATION_MODEL_ANDROID);
-        payload.remove(FcmDefinitions.NOTIFICATION_MODEL_IOS);
-
-        parsedData.put(Definitions.NOTIFICATION_PAYLOAD, payload);
+        // The view already hides the awesome sections, but it is copied because
+        // the notification model keeps the payload map and it must stay mutable
+        parsedData.put(Definitions.NOTIFICATION_PAYLOAD, new HashMap<String, String>(remoteData));
 
         return parsedData;
     }
 
     private Map<String, Object> extractNotificationData(
             @NonNull String reference,
-            @NonNull Map<String, String> remoteData
+            @NonNull FcmDataView remoteData
     ) throws AwesomeNotificationsException {
-        String jsonData = remoteData.get(reference);
+        String jsonData = remoteData.getSection(reference);
         Map<String, Object> notification = null;
         try {
             if (jsonData != null) {
-                notification = JsonUtils.fromJson(jsonData);
+                notification = FcmJsonDecoder.decodeMap(jsonData);
             }
         } catch (Exception exception) {
             throw ExceptionFactory
@@ -235,14 +297,13 @@ public class FcmNotificationBuilder {
 
     private List<Map<String, Object>> extractNotificationDataList(
             @NonNull String reference,
-            @NonNull Map<String, String> remoteData
+            @NonNull FcmDataView remoteData
     ) throws AwesomeNotificationsException {
-        String jsonData = remoteData.get(reference);
+        String jsonData = remoteData.getSection(reference);
         List<Map<String, Object>> list = null;
         try {
             if (jsonData != null) {
-                Type mapType = new TypeToken<List<Map<String, Object>>>(){}.getType();
-                list = new Gson().fromJson(jsonData, mapType);
+                list = FcmJsonDecoder.decodeMapList(jsonData);
             }
         } catch (Exception exception) {
             throw ExceptionFactory
@@ -259,14 +320,20 @@ public class FcmNotificationBuilder {
 
     private Map<String, Map<String, Object>> extractNotificationDataMap(
             @NonNull String reference,
-            @NonNull Map<String, String> remoteData
+            @NonNull FcmDataView remoteData
     ) throws AwesomeNotificationsException {
-        String jsonData = remoteData.get(reference);
+        String jsonData = remoteData.getSection(reference);
         Map<String, Map<String, Object>> map = null;
         try {
             if (jsonData != null) {
-                Type mapType = new TypeToken<Map<String, Map<String, Object>>>(){}.getType();
-                map = new Gson().fromJson(jsonData, mapType);
+                Map<String, Object> decodedMap = FcmJsonDecoder.decodeMap(jsonData);
+                if (decodedMap != null) {
+                    map = new HashMap<>(decodedMap.size());
+                    for (Map.Entry<String, Object> entry : decodedMap.entrySet())
+                        if (entry.getValue() instanceof Map)
+                            //noinspection unchecked
+                            map.put(entry.getKey(), (Map<String, Object>) entry.getValue());
+                }
             }
         } catch (Exception exception) {
             throw ExceptionFactory
@@ -300,11 +367,131 @@ public class FcmNotificationBuilder {
         return intent;
     }
 
+    /// Builds a single intent carrying all the silent data of the batch, already
+    /// encoded by SilentDataModel.toBytes and joined in one binary frame, so the
+    /// batch can be split without decoding each silent data again. Journal
+    /// sequences, when present, are aligned with the payloads.
+    public Intent buildSilentIntentFromBatch(
+            @NonNull Context context,
+            @NonNull byte[][] payloads,
+            @Nullable long[] journalSequences,
+            @NonNull String priority,
+            @NonNull Class<?> targetAction
+    ) {
+        Intent intent = new Intent(context, targetAction);
+        intent.setAction(FcmDefinitions.NOTIFICATION_SILENT_DATA);
+        intent.putExtra(FcmDefinitions.NOTIFICATION_SILENT_DATA_BINARY, FcmBinaryCodec.joinFrames(payloads));
+
+        if (journalSequences != null)
+            intent.putExtra(FcmDefinitions.NOTIFICATION_SILENT_DATA_SEQUENCES, journalSequences);
+
+        intent.putExtra(FcmDefinitions.NOTIFICATION_SILENT_DATA_PRIORITY, priority);
+        return intent;
+    }
+
+    /// Splits a batch intent into one silent intent per silent data, targeting
+    /// the same component, so executors without batch support keep receiving a
+    /// single silent data per intent. Binary payloads are moved as they are,
+    /// without being decoded, and must be read with buildSilentDataFromIntent.
+    /// Each intent carries the journal sequence of its own silent data.
+    /// Single silent intents are returned as they are.
+    @NonNull
+    public List<Intent> splitSilentBatchIntent(@NonNull Intent intent) {
+        byte[][] payloads = getBinaryPayloads(intent);
+        if (payloads != null) {
+            if (payloads.length == 1)
+                return Collections.singletonList(intent);
+
+            long[] sequences = intent.getLongArrayExtra(FcmDefinitions.NOTIFICATION_SILENT_DATA_SEQUENCES);
+            if (sequences != null && sequences.length != payloads.length)
+                sequences = null;
+
+            List<Intent> intents = new ArrayList<>(payloads.length);
+            for (int i = 0; i < payloads.length; i++) {
+                Intent silentIntent = newSingleSilentIntent(intent);
+                silentIntent.putExtra(
+                        FcmDefinitions.NOTIFICATION_SILENT_DATA_BINARY,
+                        FcmBinaryCodec.joinFrames(new byte[][]{ payloads[i] }));
+                if (sequences != null)
+                    silentIntent.putExtra(
+                            FcmDefinitions.NOTIFICATION_SILENT_DATA_SEQUENCES,
+                            new long[]{ sequences[i] });
+                intents.add(silentIntent);
+            }
+            return intents;
+        }
+
+        // Batches enqueued by previous versions
+        String[] jsonBatch = intent.getStringArrayExtra(FcmDefinitions.NOTIFICATION_SILENT_DATA_BATCH);
+        if (jsonBatch == null)
+            return Collections.singletonList(intent);
+
+        List<Intent> intents = new ArrayList<>(jsonBatch.length);
+        for (String jsonData : jsonBatch) {
+            Intent silentIntent = newSingleSilentIntent(intent);
+            silentIntent.putExtra(FcmDefinitions.NOTIFICATION_SILENT_DATA, jsonData);
+            intents.add(silentIntent);
+        }
+        return intents;
+    }
+
+    @NonNull
+    private Intent newSingleSilentIntent(@NonNull Intent batchIntent) {
+        Intent silentIntent = new Intent(FcmDefinitions.NOTIFICATION_SILENT_DATA);
+        silentIntent.setComponent(batchIntent.getComponent());
+        return silentIntent;
+    }
+
     public SilentDataModel buildSilentDataFromIntent(
             @NonNull Context context,
             @NonNull Intent intent
     ) {
+        byte[][] payloads = getBinaryPayloads(intent);
+        if (payloads != null)
+            return payloads.length == 0 ? null : new SilentDataModel().fromBytes(payloads[0]);
+
         return new SilentDataModel().fromJson(
                 intent.getStringExtra(FcmDefinitions.NOTIFICATION_SILENT_DATA));
     }
+
+    /// Returns every silent data carried by the intent, being it a batch or not
+    @NonNull
+    public List<SilentDataModel> buildSilentDataListFromIntent(
+            @NonNull Context context,
+            @NonNull Intent intent
+    ) {
+        byte[][] payloads = getBinaryPayloads(intent);
+        if (payloads != null) {
+            List<SilentDataModel> silentDataList = new ArrayList<>(payloads.length);
+            for (byte[] payload : payloads) {
+                SilentDataModel silentData = new SilentDataModel().fromBytes(payload);
+                if (silentData != null)
+                    silentDataList.add(silentData);
+            }
+            return silentDataList;
+        }
+
+        // Batches enqueued by previous versions
+        String[] jsonBatch = intent.getStringArrayExtra(FcmDefinitions.NOTIFICATION_SILENT_DATA_BATCH);
+        if (jsonBatch == null)
+            return Collections.singletonList(buildSilentDataFromIntent(context, intent));
+
+        List<SilentDataModel> silentDataList = new ArrayList<>(jsonBatch.length);
+        for (String jsonData : jsonBatch)
+            silentDataList.add(new SilentDataModel().fromJson(jsonData));
+        return silentDataList;
+    }
+
+    @Nullable
+    private byte[][] getBinaryPayloads(@NonNull Intent intent) {
+        byte[] frames = intent.getByteArrayExtra(FcmDefinitions.NOTIFICATION_SILENT_DATA_BINARY);
+        if (frames == null) return null;
+
+        try {
+            return FcmBinaryCodec.splitFrames(frames);
+        } catch (IOException exception) {
+            Logger.e(TAG, "Invalid binary silent data batch: " + exception.getMessage());
+            return new byte[0][];
+        }
+    }
 }
@@ -0,0 +1,103 @@
+package me.carda.awesome_notifications_fcm.core.interpreters;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import me.carda.awesome_notifications.core.AwesomeNotifications;
+import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
+import me.carda.awesome_notifications.core.logs.Logger;
+import me.carda.awesome_notifications.core.managers.CancellationManager;
+import me.carda.awesome_notifications_fcm.core.managers.MessageIdManager;
+import me.carda.awesome_notifications_fcm.core.utils.JsonListScanner;
+
+/// Gathers every dismiss target requested by the RPCs of one push, so each
+/// notification, channel and group is dismissed only once, and a dismiss all
+/// request makes every other target unnecessary.
+final class DismissBatch implements RemoteCommandBatch.Work {
+
+    private static final String TAG = "DismissBatch";
+
+    private final Set<Integer> notificationIds = new LinkedHashSet<>();
+    private final Set<String> channelKeys = new LinkedHashSet<>();
+    private final Set<String> groupKeys = new LinkedHashSet<>();
+    private boolean dismissAll = false;
+
+    void addNotificationIds(@Nullable String jsonList) {
+        if (dismissAll) return;
+        int invalidIds = JsonListScanner.scanIntegers(jsonList, notificationIds);
+        if (invalidIds > 0)
+            Logger.w(TAG, invalidIds + " invalid notification ids were ignored");
+    }
+
+    /// Resolves FCM message ids into the notification ids created for them
+    void addMessageIds(@NonNull Context context, @Nullable String jsonList) {
+        if (dismissAll) return;
+
+        List<String> messageIds = new ArrayList<>();
+        JsonListScanner.scanStrings(jsonList, messageIds);
+
+        MessageIdManager messageIdManager = MessageIdManager.getInstance();
+        for (String messageId : messageIds) {
+            Integer notificationId = messageIdManager.getNotificationIdByMessageId(context, messageId);
+            if (notificationId != null)
+                notificationIds.add(notificationId);
+            else if (AwesomeNotifications.debug)
+                Logger.d(TAG, "No notification was created for the message id " + messageId);
+        }
+    }
+
+    void addChannelKeys(@Nullable String jsonList) {
+        if (dismissAll) return;
+        JsonListScanner.scanStrings(jsonList, channelKeys);
+    }
+
+    void addGroupKeys(@Nullable String jsonList) {
+        if (dismissAll) return;
+        JsonListScanner.scanStrings(jsonList, groupKeys);
+    }
+
+    void addAllNotifications() {
+        dismissAll = true;
+        notificationIds.clear();
+        channelKeys.clear();
+        groupKeys.clear();
+    }
+
+    boolean isEmpty() {
+        return !dismissAll &&
+                notificationIds.isEmpty() &&
+                channelKeys.isEmpty() &&
+                groupKeys.isEmpty();
+    }
+
+    @Override
+    public void execute(@NonNull Context context) throws AwesomeNotificationsException {
+        if (isEmpty()) return;
+
+        CancellationManager cancellationManager = CancellationManager.getInstance();
+        if (dismissAll) {
+            cancellationManager.dismissAllNotifications(context);
+            return;
+        }
+
+        if (AwesomeNotifications.debug)
+            Logger.d(TAG, "Dismissing " + notificationIds.size() + " ids, " +
+                    channelKeys.size() + " channels and " + groupKeys.size() + " groups");
+
+        for (String channelKey : channelKeys)
+            cancellationManager.dismissNotificationsByChannelKey(context, channelKey);
+
+        for (String groupKey : groupKeys)
+            cancellationManager.dismissNotificationsByGroupKey(context, groupKey);
+
+        for (Integer notificationId : notificationIds)
+            cancellationManager.dismissNotification(context, notificationId);
+    }
+}
@@ -0,0 +1,62 @@
+package me.carda.awesome_notifications_fcm.core.interpreters;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/// Dismiss RPCs only register their targets into the DismissBatch shared by
+/// the commands of the push, so all of them are resolved together at the end.
+final class DismissCommand implements RemoteCommand {
+
+    enum Target {
+        Ids,
+        Channels,
+        Groups,
+        MessageIds,
+        All
+    }
+
+    private final Target target;
+
+    DismissCommand(@NonNull Target target) {
+        this.target = target;
+    }
+
+    @Override
+    public void execute(
+            @NonNull Context context,
+            @Nullable String argument,
+            @NonNull Bundle extras,
+            @NonNull RemoteCommandBatch batch
+    ) {
+        DismissBatch dismissBatch = batch.getWork(DismissBatch.class);
+        if (dismissBatch == null) {
+            dismissBatch = new DismissBatch();
+            batch.addWork(dismissBatch);
+        }
+
+        switch (target) {
+            case Ids:
+                dismissBatch.addNotificationIds(argument);
+                break;
+
+            case Channels:
+                dismissBatch.addChannelKeys(argument);
+                break;
+
+            case Groups:
+                dismissBatch.addGroupKeys(argument);
+                break;
+
+            case MessageIds:
+                dismissBatch.addMessageIds(context, argument);
+                break;
+
+            case All:
+                dismissBatch.addAllNotifications();
+                break;
+        }
+    }
+}
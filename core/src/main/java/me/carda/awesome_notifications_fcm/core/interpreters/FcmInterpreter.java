@@ -2,28 +2,18 @@ package me.carda.awesome_notifications_fcm.core.interpreters;
 
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
 import android.os.Bundle;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.google.firebase.messaging.MessagingAnalytics;
 import com.google.firebase.messaging.NotificationParams;
 import com.google.firebase.messaging.RemoteMessage;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Queue;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
 
 import me.carda.awesome_notifications.core.AwesomeNotifications;
+import me.carda.awesome_notifications.core.Definitions;
 import me.carda.awesome_notifications.core.builders.NotificationBuilder;
 import me.carda.awesome_notifications.core.completion_handlers.NotificationThreadCompletionHandler;
 import me.carda.awesome_notifications.core.enumerators.NotificationSource;
@@ -31,7 +21,6 @@ import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsExcept
 import me.carda.awesome_notifications.core.exceptions.ExceptionCode;
 import me.carda.awesome_notifications.core.exceptions.ExceptionFactory;
 import me.carda.awesome_notifications.core.logs.Logger;
-import me.carda.awesome_notifications.core.managers.CancellationManager;
 import me.carda.awesome_notifications.core.models.NotificationModel;
 import me.carda.awesome_notifications.core.threads.NotificationScheduler;
 import me.carda.awesome_notifications.core.threads.NotificationSender;
@@ -41,42 +30,69 @@ import me.carda.awesome_notifications_fcm.core.FcmDefinitions;
 import me.carda.awesome_notifications_fcm.core.broadcasters.broadcasters.FcmBroadcaster;
 import me.carda.awesome_notifications_fcm.core.builders.FcmNotificationBuilder;
 import me.carda.awesome_notifications_fcm.core.licenses.LicenseManager;
+import me.carda.awesome_notifications_fcm.core.managers.ChannelIndexManager;
+import me.carda.awesome_notifications_fcm.core.managers.MessageIdManager;
+import me.carda.awesome_notifications_fcm.core.metrics.FcmMetricsManager;
+import me.carda.awesome_notifications_fcm.core.metrics.PipelineStage;
 import me.carda.awesome_notifications_fcm.core.models.SilentDataModel;
+import me.carda.awesome_notifications_fcm.core.threads.NotificationUpdateThrottler;
+import me.carda.awesome_notifications_fcm.core.threads.SilentDataPriority;
+import me.carda.awesome_notifications_fcm.core.utils.FcmDataView;
+import me.carda.awesome_notifications_fcm.core.utils.FcmJsonDecoder;
 
 
 public class FcmInterpreter {
 
     private static final String TAG = "FcmInterpreter";
-    private static final Queue<String> recentlyReceivedMessageIds = new ArrayDeque(10);
+
+    public static final String COUNTER_DROPPED_BY_PERMISSION = "droppedByPermission";
+    public static final String COUNTER_DROPPED_BY_CHANNEL = "droppedByDisabledChannel";
+
+    private static final String FCM_COLLAPSE_KEY = "collapse_key";
+    // Sent by FCM in place of a collapse key on non collapsible messages
+    private static final String FCM_DO_NOT_COLLAPSE = "do_not_collapse";
 
     public static RemoteMessage executeRemoteInstructions(Context context, Intent intent) {
+        return executeRemoteInstructions(context, intent, System.currentTimeMillis(), true);
+    }
+
+    /// receivedTime is the epoch time, in milliseconds, when the push reached the device.
+    /// If requiresRemoteMessage is false, a RemoteMessage is only built when the push
+    /// path needs one, and null can be returned even for delivered pushes.
+    public static RemoteMessage executeRemoteInstructions(
+            Context context,
+            Intent intent,
+            long receivedTime,
+            boolean requiresRemoteMessage
+    ) {
         Bundle extras = intent.getExtras();
+        if (extras == null)
+            extras = new Bundle();
+
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
 
         try {
-            for (String key : extras.keySet())
-                switch (key){
-
-                    case FcmDefinitions.RPC_DISMISS:
-                        dismissNotifications(context, extras.getString(key));
-                        extras.remove(key);
-                        break;
-
-                    case FcmDefinitions.RPC_DISMISS_BY_CHANNEL:
-                        dismissNotificationsByChannel(context, extras.getString(key));
-                        extras.remove(key);
-                        break;
-
-                    case FcmDefinitions.RPC_DISMISS_BY_GROUP:
-                        dismissNotificationsByGroup(context, extras.getString(key));
-                        extras.remove(key);
-                        break;
-
-                    case FcmDefinitions.RPC_DISMISS_ALL:
-                        dismissAllNotifications(context);
-                        extras.remove(key);
-                        break;
-                }
-            return processPushContent(context, intent);
+            int executedCommands;
+            long rpcStartTime = metricsManager.beginStage(PipelineStage.RpcScan);
+            try {
+                executedCommands = RemoteCommandRegistry
+                        .getInstance()
+                        .executeCommands(context, extras);
+            } finally {
+                metricsManager.endStage(PipelineStage.RpcScan, rpcStartTime);
+            }
+
+            PushMessageType pushType = PushMessageType.classify(extras, executedCommands > 0);
+            if (pushType == PushMessageType.RemoteCommandsOnly) {
+                if (AwesomeNotifications.debug)
+                    Logger.d(TAG, "Push with only remote instructions, no content to deliver");
+
+                // Still delivered to the onMessageReceived of service subclasses
+                return requiresRemoteMessage ? newRemoteMessage(extras) : null;
+            }
+
+            // The same extras are used, so the executed RPC keys stay removed
+            return processPushContent(context, intent, extras, pushType, receivedTime, requiresRemoteMessage);
         } catch (AwesomeNotificationsException ignored) {
         } catch (Exception exception) {
             ExceptionFactory
@@ -90,145 +106,383 @@ public class FcmInterpreter {
         return null;
     }
 
-    private static RemoteMessage processPushContent(Context context, Intent intent) throws AwesomeNotificationsException {
-        Bundle extras = intent.getExtras();
-        if (extras == null)
-            extras = new Bundle();
+    private static RemoteMessage processPushContent(
+            @NonNull Context context,
+            @NonNull Intent intent,
+            @NonNull Bundle extras,
+            @NonNull PushMessageType pushType,
+            long receivedTime,
+            boolean requiresRemoteMessage
+    ) throws AwesomeNotificationsException {
+        RemoteMessage remoteMessage = null;
 
-        RemoteMessage remoteMessage = new RemoteMessage(extras);
+        switch (pushType) {
 
-        deliveryAwesomeNotification(
-                context,
-                intent,
-                extras,
-                remoteMessage,
-                new NotificationThreadCompletionHandler() {
-                    @Override
-                    public void handle(boolean wasDisplayed, AwesomeNotificationsException exception) {
-                        if (wasDisplayed && MessagingAnalytics.shouldUploadScionMetrics(intent)) {
-                            MessagingAnalytics.logNotificationForeground(intent);
-                        }
-                    }
-                });
+            case Notification:
+                if (coalesceNotificationDelivery(context, intent, extras, receivedTime))
+                    break;
+
+                remoteMessage = newRemoteMessage(extras);
+                deliveryAwesomeNotification(
+                        context,
+                        intent,
+                        extras,
+                        remoteMessage,
+                        new PushDisplayCompletionHandler(intent, extras, receivedTime));
+                break;
+
+            case SilentData:
+                deliverySilentData(
+                        context,
+                        extras,
+                        new PushDisplayCompletionHandler(intent, extras, receivedTime));
+                break;
+
+            case Hidden:
+                break;
+        }
+
+        if (remoteMessage == null && requiresRemoteMessage)
+            remoteMessage = newRemoteMessage(extras);
 
         return remoteMessage;
     }
 
-    static boolean deliveryAwesomeNotification(
+    @NonNull
+    private static RemoteMessage newRemoteMessage(@NonNull Bundle extras) {
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+        long parsingStartTime = metricsManager.beginStage(PipelineStage.MessageParsing);
+        try {
+            return new RemoteMessage(extras);
+        } finally {
+            metricsManager.endStage(PipelineStage.MessageParsing, parsingStartTime);
+        }
+    }
+
+    /// Hands the notification display to the NotificationCoalescer, so a newer
+    /// push for the same notification can replace it before being built.
+    /// Pushes without a content id or an explicit collapse key are never held.
+    private static boolean coalesceNotificationDelivery(
+            @NonNull final Context context,
+            @NonNull final Intent intent,
+            @NonNull final Bundle extras,
+            final long receivedTime
+    ) {
+        NotificationCoalescer coalescer = NotificationCoalescer.getInstance();
+        if (!coalescer.isEnabled()) return false;
+
+        String coalescingKey = getNotificationKey(
+                context,
+                extras.getString(FCM_COLLAPSE_KEY),
+                extras.getString(Definitions.NOTIFICATION_MODEL_CONTENT));
+        if (coalescingKey == null) return false;
+
+        return coalescer.offer(coalescingKey, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // RemoteMessage is not thread safe, so the held delivery uses its own instance
+                    deliveryAwesomeNotification(
+                            context,
+                            intent,
+                            extras,
+                            new RemoteMessage(extras),
+                            new PushDisplayCompletionHandler(intent, extras, receivedTime));
+                } catch (AwesomeNotificationsException ignored) {
+                } catch (Exception exception) {
+                    ExceptionFactory
+                            .getInstance()
+                            .registerNewAwesomeException(
+                                    TAG,
+                                    ExceptionCode.CODE_UNKNOWN_EXCEPTION,
+                                    ExceptionCode.DETAILED_UNEXPECTED_ERROR+"."+exception.getClass().getSimpleName(),
+                                    exception);
+                }
+            }
+        });
+    }
+
+    /// Key shared by every push targeting the same notification: its content id,
+    /// or the collapse key when the sender set one. Returns null if the push
+    /// has none of them.
+    @Nullable
+    private static String getNotificationKey(
+            @NonNull Context context,
+            @Nullable String collapseKey,
+            @Nullable String contentJson
+    ) {
+        Integer contentId = extractContentId(contentJson);
+        if (contentId != null && contentId >= 0)
+            return "id:" + contentId;
+
+        if (isExplicitCollapseKey(context, collapseKey))
+            return "collapse:" + collapseKey;
+        return null;
+    }
+
+    /// FCM fills the collapse key with the package name when the sender did not set one
+    private static boolean isExplicitCollapseKey(@NonNull Context context, @Nullable String collapseKey) {
+        return !StringUtils.getInstance().isNullOrEmpty(collapseKey)
+                && !collapseKey.equals(context.getPackageName())
+                && !FCM_DO_NOT_COLLAPSE.equals(collapseKey);
+    }
+
+    /// Reads only the top level id of the content json, stopping as soon as it is found
+    @Nullable
+    private static Integer extractContentId(@Nullable String contentJson) {
+        Object id = FcmJsonDecoder.findValue(contentJson, Definitions.NOTIFICATION_ID);
+        return id instanceof Integer ? (Integer) id : null;
+    }
+
+    static void deliveryAwesomeNotification(
             @NonNull Context context,
             @NonNull Intent intent,
             @NonNull Bundle extras,
             @NonNull RemoteMessage remoteMessage,
-            @NonNull NotificationThreadCompletionHandler completionHandler
+            @NonNull PushDisplayCompletionHandler completionHandler
     ) throws AwesomeNotificationsException {
-        if (!extras.getBoolean("gcm.n.noui")) {
-            int notificationId = getMessageIdInInteger(intent);
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+        metricsManager.incrementCounter(FcmMetricsManager.COUNTER_NOTIFICATIONS);
 
+        if (isDisplayBlocked(context, extras))
+            return;
+
+        int notificationId = getNotificationId(context, intent);
+
+        NotificationModel notificationModel;
+        long buildStartTime = metricsManager.beginStage(PipelineStage.NotificationBuild);
+        try {
             NotificationParams notificationParams = new NotificationParams(extras);
-            boolean isNotification = NotificationParams.isNotification(extras);
+            notificationModel =
+                    FcmNotificationBuilder
+                            .getNewBuilder()
+                            .buildNotificationFromExtras(
+                                    context,
+                                    notificationId,
+                                    remoteMessage,
+                                    notificationParams,
+                                    FcmDataView.payloadOf(extras));
+        } finally {
+            metricsManager.endStage(PipelineStage.NotificationBuild, buildStartTime);
+        }
 
-            if(isNotification){
-                NotificationModel notificationModel =
-                        FcmNotificationBuilder
-                                .getNewBuilder()
-                                .buildNotificationFromExtras(
-                                        context,
-                                        notificationId,
-                                        remoteMessage,
-                                        notificationParams);
+        if (notificationModel.content.id == null || notificationModel.content.id < 0)
+            notificationModel.content.id = IntegerUtils.generateNextRandomId();
 
-                if (notificationModel.content.id == null || notificationModel.content.id < 0)
-                    notificationModel.content.id = IntegerUtils.generateNextRandomId();
+        completionHandler.setChannelKey(notificationModel.content.channelKey);
 
-                notificationModel.validate(context);
+        long validationStartTime = metricsManager.beginStage(PipelineStage.Validation);
+        try {
+            assertChannelExists(context, notificationModel.content.channelKey);
+            notificationModel.validate(context);
+        } finally {
+            metricsManager.endStage(PipelineStage.Validation, validationStartTime);
+        }
 
-                boolean isDebuggable = false;
-                try {
-                    isDebuggable = ( 0 != (
-                            context
-                            .getPackageManager()
-                            .getApplicationInfo(
-                                    AwesomeNotifications.getPackageName(context),
-                                    ApplicationInfo.FLAG_DEBUGGABLE)
-                            .flags & ApplicationInfo.FLAG_DEBUGGABLE ) );
-                } catch (PackageManager.NameNotFoundException e) {
-                    e.printStackTrace();
-                }
+        long licenseStartTime = metricsManager.beginStage(PipelineStage.LicenseCheck);
+        try {
+            applyLicenseRestrictions(context, notificationModel);
+        } finally {
+            metricsManager.endStage(PipelineStage.LicenseCheck, licenseStartTime);
+        }
 
-                if(
-                    !isDebuggable &&
-                    !LicenseManager
-                        .getInstance()
-                        .printValidationTest(context)
-                ){
-                    if(!StringUtils.getInstance().isNullOrEmpty(notificationModel.content.title))
-                        notificationModel.content.title =
-                                "[DEMO] "+ notificationModel.content.title;
-                    else if(!StringUtils.getInstance().isNullOrEmpty(notificationModel.content.body))
-                        notificationModel.content.body =
-                                "[DEMO] "+ notificationModel.content.body;
-                }
+        receiveNotificationContent(
+                context,
+                notificationModel,
+                intent,
+                completionHandler);
+    }
 
-                receiveNotificationContent(
-                        context,
-                        notificationModel,
-                        intent,
-                        completionHandler);
+    private static void deliverySilentData(
+            @NonNull Context context,
+            @NonNull Bundle extras,
+            @NonNull PushDisplayCompletionHandler completionHandler
+    ) throws AwesomeNotificationsException {
+        FcmMetricsManager
+                .getInstance()
+                .incrementCounter(FcmMetricsManager.COUNTER_SILENT_DATA);
 
-                return true;
-            }
-            else {
-                Map<String, Object> arguments = new HashMap<>(remoteMessage.getData());
-                SilentDataModel silentData =
-                        (SilentDataModel) new SilentDataModel()
-                                                    .fromMap(arguments);
-                receiveSilentDataContent(
-                        context,
-                        silentData,
-                        completionHandler);
+        SilentDataModel silentData =
+                (SilentDataModel) new SilentDataModel()
+                                            .fromMap(Collections.<String, Object>unmodifiableMap(
+                                                    FcmDataView.dataOf(extras)));
+        receiveSilentDataContent(
+                context,
+                silentData,
+                SilentDataPriority.fromPush(extras),
+                completionHandler);
+    }
 
-                return false;
-            }
+    /// Drops notifications that could never be displayed, because the user
+    /// revoked the notification permission or disabled the target channel,
+    /// before paying for their build. Both states are read live before a drop,
+    /// so a stale index never loses a push. Scheduled notifications are never
+    /// dropped, as the permission and channel can be enabled until displayed.
+    private static boolean isDisplayBlocked(
+            @NonNull Context context,
+            @NonNull Bundle extras
+    ) throws AwesomeNotificationsException {
+        if (extras.containsKey(Definitions.NOTIFICATION_MODEL_SCHEDULE)) return false;
+
+        ChannelIndexManager channelIndex = ChannelIndexManager.getInstance();
+        String dropCounter = null;
+
+        if (!channelIndex.areNotificationsEnabled(context))
+            dropCounter = COUNTER_DROPPED_BY_PERMISSION;
+
+        else if (channelIndex.isChannelDisabled(context, getTargetChannelKey(context, extras)))
+            dropCounter = COUNTER_DROPPED_BY_CHANNEL;
+
+        if (dropCounter == null) return false;
+
+        FcmMetricsManager.getInstance().incrementCounter(dropCounter);
+        if (AwesomeNotifications.debug)
+            Logger.d(TAG, "Push notification dropped before build (" + dropCounter + ")");
+        return true;
+    }
+
+    /// Channel key the notification will be displayed on, read without building it
+    @Nullable
+    private static String getTargetChannelKey(
+            @NonNull Context context,
+            @NonNull Bundle extras
+    ) throws AwesomeNotificationsException {
+        Object channelKey = FcmJsonDecoder.findValue(
+                extras.getString(FcmDefinitions.NOTIFICATION_MODEL_ANDROID),
+                Definitions.NOTIFICATION_MODEL_CONTENT, Definitions.NOTIFICATION_CHANNEL_KEY);
+
+        if (channelKey == null)
+            channelKey = extras.getString("gcm.n.android_channel_id");
+
+        if (channelKey == null) {
+            String contentJson = extras.getString(Definitions.NOTIFICATION_MODEL_CONTENT);
+            channelKey = contentJson != null
+                    ? FcmJsonDecoder.findValue(contentJson, Definitions.NOTIFICATION_CHANNEL_KEY)
+                    : ChannelIndexManager.getInstance().getDefaultChannelKey(context);
         }
-        return false;
+
+        return channelKey instanceof String ? (String) channelKey : null;
     }
 
-    private static int getMessageIdInInteger(Intent intent) {
-        String messageId = intent.getStringExtra("google.message_id");
+    /// Fails fast through the channel index, before the full model validation.
+    /// Keys missing from the index are confirmed on the channel repository first.
+    private static void assertChannelExists(
+            @NonNull Context context,
+            @Nullable String channelKey
+    ) throws AwesomeNotificationsException {
+        if (channelKey == null || ChannelIndexManager.getInstance().channelExists(context, channelKey))
+            return;
 
-        if(!StringUtils.getInstance().isNullOrEmpty(messageId)) {
-            String pattern = "^.*:(\\d{1,8})\\%";
-            Pattern regex = Pattern.compile(pattern);
-            Matcher matcher = regex.matcher(messageId);
+        throw ExceptionFactory
+                .getInstance()
+                .createNewAwesomeException(
+                        TAG,
+                        ExceptionCode.CODE_INVALID_ARGUMENTS,
+                        "Channel '" + channelKey + "' does not exist",
+                        ExceptionCode.DETAILED_INVALID_ARGUMENTS+".fcm.channel."+channelKey);
+    }
 
-            if (matcher.find())
-                return Integer.parseInt(Objects.requireNonNull(matcher.group(1)));
+    private static void applyLicenseRestrictions(
+            @NonNull Context context,
+            @NonNull NotificationModel notificationModel
+    ) throws AwesomeNotificationsException {
+        if(
+            LicenseManager
+                .getInstance()
+                .isWatermarkRequired(context)
+        ){
+            if(!StringUtils.getInstance().isNullOrEmpty(notificationModel.content.title))
+                notificationModel.content.title =
+                        "[DEMO] "+ notificationModel.content.title;
+            else if(!StringUtils.getInstance().isNullOrEmpty(notificationModel.content.body))
+                notificationModel.content.body =
+                        "[DEMO] "+ notificationModel.content.body;
         }
+    }
+
+    private static int getNotificationId(@NonNull Context context, @NonNull Intent intent) {
+        String messageId = intent.getStringExtra("google.message_id");
+        if (messageId == null)
+            messageId = intent.getStringExtra("message_id");
 
-        return IntegerUtils.generateNextRandomId();
+        return MessageIdManager
+                .getInstance()
+                .getNotificationId(context, messageId);
     }
 
     private static void receiveSilentDataContent(
             @NonNull Context context,
             @NonNull SilentDataModel silentDataModel,
+            @NonNull SilentDataPriority priority,
             @NonNull NotificationThreadCompletionHandler completionHandler
     ) throws AwesomeNotificationsException {
         if(AwesomeNotifications.debug)
-            Logger.d(TAG, "New silent push received");
+            Logger.d(TAG, "New " + priority + " priority silent push received");
 
-        FcmBroadcaster.SendBroadcastSilentData(context, silentDataModel);
+        FcmBroadcaster.SendBroadcastSilentData(context, silentDataModel, priority);
     }
 
     private static void receiveNotificationContent(
+            @NonNull final Context context,
+            @NonNull final NotificationModel notificationModel,
+            @Nullable final Intent originalIntent,
+            @NonNull final PushDisplayCompletionHandler completionHandler
+    ) throws AwesomeNotificationsException {
+        if(AwesomeNotifications.debug)
+            Logger.d(TAG, "New push notification received");
+
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+
+        if(notificationModel.schedule == null) {
+            boolean isThrottled = NotificationUpdateThrottler
+                    .getInstance()
+                    .offer(notificationModel.content.id, new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                sendNotification(context, notificationModel, originalIntent, completionHandler);
+                            } catch (AwesomeNotificationsException ignored) {
+                            } catch (Exception exception) {
+                                ExceptionFactory
+                                        .getInstance()
+                                        .registerNewAwesomeException(
+                                                TAG,
+                                                ExceptionCode.CODE_UNKNOWN_EXCEPTION,
+                                                ExceptionCode.DETAILED_UNEXPECTED_ERROR+"."+exception.getClass().getSimpleName(),
+                                                exception);
+                            }
+                        }
+                    });
+
+            if (!isThrottled)
+                sendNotification(context, notificationModel, originalIntent, completionHandler);
+            return;
+        }
+
+        completionHandler.setScheduled();
+
+        long startTime = metricsManager.beginStage(PipelineStage.Schedule);
+        try {
+            NotificationScheduler
+                    .schedule(
+                        context,
+                        NotificationSource.Firebase,
+                        notificationModel,
+                        completionHandler);
+        } finally {
+            metricsManager.endStage(PipelineStage.Schedule, startTime);
+        }
+    }
+
+    private static void sendNotification(
             @NonNull Context context,
             @NonNull NotificationModel notificationModel,
             @Nullable Intent originalIntent,
             @NonNull NotificationThreadCompletionHandler completionHandler
     ) throws AwesomeNotificationsException {
-        if(AwesomeNotifications.debug)
-            Logger.d(TAG, "New push notification received");
-
-        if(notificationModel.schedule == null)
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+        long startTime = metricsManager.beginStage(PipelineStage.Send);
+        try {
             NotificationSender
                     .send(
                         context,
@@ -238,13 +492,9 @@ public class FcmInterpreter {
                         notificationModel,
                         originalIntent,
                         completionHandler);
-        else
-            NotificationScheduler
-                    .schedule(
-                        context,
-                        NotificationSource.Firebase,
-                        notificationModel,
-                        completionHandler);
+        } finally {
+            metricsManager.endStage(PipelineStage.Send, startTime);
+        }
     }
 
     private static void saveOriginalIntentExtras(@NonNull Intent intent){
@@ -265,60 +515,4 @@ public class FcmInterpreter {
             }
         }
     }
-
-    private static List<String> getListFromJsonText(String textValue){
-        final String regex = "\\[?([^,\\[\\]]+)*\\]?";
-        final Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
-        final Matcher matcher = pattern.matcher(textValue);
-
-        List<String> valuesList = new ArrayList<>();
-        while (matcher.find())
-            for (int i = 1; i <= matcher.groupCount(); i++)
-                valuesList.add(matcher.group(i));
-
-        return valuesList;
-    }
-
-    private static void dismissNotifications(@NonNull Context context, String textValue) throws AwesomeNotificationsException {
-        if(StringUtils.getInstance().isNullOrEmpty(textValue))
-            return;
-
-        List<String> ids = getListFromJsonText(textValue);
-        CancellationManager cancellationManager = CancellationManager.getInstance();
-
-        for (String id: ids) {
-            cancellationManager
-                    .dismissNotification(context, Integer.parseInt(id));
-        }
-    }
-
-    private static void dismissNotificationsByChannel(@NonNull Context context, String textValue) throws AwesomeNotificationsException {
-        if(StringUtils.getInstance().isNullOrEmpty(textValue))
-            return;
-
-        List<String> channels = getListFromJsonText(textValue);
-        CancellationManager cancellationManager = CancellationManager.getInstance();
-
-        for (String channel: channels)
-            cancellationManager
-                    .dismissNotificationsByChannelKey(context, channel);
-    }
-
-    private static void dismissNotificationsByGroup(@NonNull Context context, String textValue) throws AwesomeNotificationsException {
-        if(StringUtils.getInstance().isNullOrEmpty(textValue))
-            return;
-
-        List<String> groups = getListFromJsonText(textValue);
-        CancellationManager cancellationManager = CancellationManager.getInstance();
-
-        for (String group: groups)
-            cancellationManager
-                    .dismissNotificationsByGroupKey(context, group);
-    }
-
-    private static void dismissAllNotifications(@NonNull Context context) throws AwesomeNotificationsException {
-        CancellationManager
-                .getInstance()
-                .dismissAllNotifications(context);
-    }
 }
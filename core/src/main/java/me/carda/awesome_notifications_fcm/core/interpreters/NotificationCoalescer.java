@@ -0,0 +1,98 @@
+package me.carda.awesome_notifications_fcm.core.interpreters;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.carda.awesome_notifications.core.AwesomeNotifications;
+import me.carda.awesome_notifications.core.logs.Logger;
+import me.carda.awesome_notifications_fcm.core.metrics.FcmMetricsManager;
+import me.carda.awesome_notifications_fcm.core.threads.FcmDelayedExecutor;
+
+/// Holds the display of notification pushes for a short window, so when
+/// several pushes for the same notification id, or the same collapse key set
+/// by the sender, arrive in a burst only the latest one is built and sent to
+/// the NotificationManager. Deliveries still held when the FCM service is
+/// destroyed are sent before its onDestroy returns.
+public final class NotificationCoalescer {
+
+    public static final String TAG = "NotificationCoalescer";
+    public static final String COUNTER_COALESCED_NOTIFICATIONS = "coalescedNotifications";
+
+    private long windowMillis = 0;
+    private final Map<String, Runnable> pendingDeliveries = new HashMap<>();
+
+    // ************** SINGLETON PATTERN ***********************
+
+    private static NotificationCoalescer instance;
+
+    private NotificationCoalescer(){}
+    public static synchronized NotificationCoalescer getInstance() {
+        if (instance == null)
+            instance = new NotificationCoalescer();
+        return instance;
+    }
+
+    // ********************************************************
+
+    /// Sets the coalescing window. Zero disables the coalescing.
+    public synchronized void setWindowMillis(long windowMillis) {
+        this.windowMillis = Math.max(0, windowMillis);
+    }
+
+    public synchronized boolean isEnabled() {
+        return windowMillis > 0;
+    }
+
+    /// Holds the delivery until the end of the current window of its key,
+    /// replacing any older delivery still waiting for the same key.
+    /// Returns false if the delivery must be done immediately by the caller.
+    public synchronized boolean offer(@NonNull final String coalescingKey, @NonNull Runnable delivery) {
+        if (windowMillis == 0) return false;
+
+        if (pendingDeliveries.put(coalescingKey, delivery) != null) {
+            FcmMetricsManager
+                    .getInstance()
+                    .incrementCounter(COUNTER_COALESCED_NOTIFICATIONS);
+
+            if (AwesomeNotifications.debug)
+                Logger.d(TAG, "Notification coalesced with a newer one (key: " + coalescingKey + ")");
+            return true;
+        }
+
+        FcmDelayedExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush(coalescingKey);
+            }
+        }, windowMillis);
+        return true;
+    }
+
+    /// Delivers immediately every notification still waiting for its window
+    public void flushAll() {
+        List<String> keys;
+        synchronized (this) {
+            keys = new ArrayList<>(pendingDeliveries.keySet());
+        }
+        for (String key : keys)
+            flush(key);
+    }
+
+    private void flush(@NonNull String coalescingKey) {
+        Runnable delivery;
+        synchronized (this) {
+            delivery = pendingDeliveries.remove(coalescingKey);
+        }
+        if (delivery == null) return;
+
+        try {
+            delivery.run();
+        } catch (Exception exception) {
+            Logger.e(TAG, "Coalesced notification (key: " + coalescingKey + ") failed: " + exception.getMessage());
+        }
+    }
+}
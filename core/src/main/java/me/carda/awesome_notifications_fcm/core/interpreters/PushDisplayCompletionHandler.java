@@ -0,0 +1,85 @@
+package me.carda.awesome_notifications_fcm.core.interpreters;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.messaging.MessagingAnalytics;
+
+import me.carda.awesome_notifications.core.completion_handlers.NotificationThreadCompletionHandler;
+import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
+import me.carda.awesome_notifications_fcm.core.metrics.DeliveryLatencyTracker;
+
+/// Completion handler for pushes sent to display, that logs the Firebase
+/// foreground analytics and the end to end delivery latency of each push.
+/// Scheduled pushes are not displayed on arrival, so their display is not
+/// recorded as delivery latency.
+class PushDisplayCompletionHandler implements NotificationThreadCompletionHandler {
+
+    static final String FCM_SENT_TIME = "google.sent_time";
+    static final String FCM_TTL = "google.ttl";
+    static final String FCM_PRIORITY = "google.priority";
+
+    private final Intent intent;
+    private final long sentTime;
+    private final long receivedTime;
+    private final long ttlSeconds;
+    private final String priority;
+
+    private volatile String channelKey;
+    private volatile boolean isScheduled;
+
+    PushDisplayCompletionHandler(
+            @NonNull Intent intent,
+            @NonNull Bundle extras,
+            long receivedTime
+    ) {
+        this.intent = intent;
+        this.receivedTime = receivedTime;
+        this.sentTime = parseLong(extras.get(FCM_SENT_TIME));
+        this.ttlSeconds = parseLong(extras.get(FCM_TTL));
+        this.priority = extras.getString(FCM_PRIORITY);
+    }
+
+    void setChannelKey(@Nullable String channelKey) {
+        this.channelKey = channelKey;
+    }
+
+    void setScheduled() {
+        this.isScheduled = true;
+    }
+
+    @Override
+    public void handle(boolean wasDisplayed, AwesomeNotificationsException exception) {
+        if (!wasDisplayed) return;
+
+        if (MessagingAnalytics.shouldUploadScionMetrics(intent))
+            MessagingAnalytics.logNotificationForeground(intent);
+
+        if (isScheduled) return;
+
+        DeliveryLatencyTracker
+                .getInstance()
+                .recordDisplay(
+                        channelKey,
+                        priority,
+                        sentTime,
+                        receivedTime,
+                        ttlSeconds,
+                        System.currentTimeMillis());
+    }
+
+    /// FCM sends these values as strings, but they can also come as numbers on redeliveries
+    private static long parseLong(@Nullable Object value) {
+        if (value instanceof Number)
+            return ((Number) value).longValue();
+        if (value instanceof String)
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException ignored) {
+            }
+        return 0;
+    }
+}
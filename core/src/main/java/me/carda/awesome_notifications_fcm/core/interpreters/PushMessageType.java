@@ -0,0 +1,49 @@
+package me.carda.awesome_notifications_fcm.core.interpreters;
+
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+
+/// Kind of content carried by a push, decided only from a few Bundle keys,
+/// so each kind can follow its own path without building the objects that
+/// the other paths need.
+public enum PushMessageType {
+    /// Only remote commands, already executed, and Firebase metadata
+    RemoteCommandsOnly,
+    /// Notification that must not be displayed (gcm.n.noui)
+    Hidden,
+    Notification,
+    SilentData;
+
+    @NonNull
+    static PushMessageType classify(@NonNull Bundle extras, boolean hadRemoteCommands) {
+        if (hadRemoteCommands && !hasPushContent(extras))
+            return RemoteCommandsOnly;
+
+        if (extras.getBoolean("gcm.n.noui"))
+            return Hidden;
+
+        // Same keys checked by NotificationParams.isNotification
+        if ("1".equals(extras.getString("gcm.n.e")) ||
+            "1".equals(extras.getString("gcm.notification.e")))
+            return Notification;
+
+        return SilentData;
+    }
+
+    /// Every key except the Firebase metadata is considered push content
+    static boolean hasPushContent(@NonNull Bundle extras) {
+        for (String key : extras.keySet()) {
+            if (key.startsWith("google.")) continue;
+            switch (key) {
+                case "from":
+                case "collapse_key":
+                case "message_type":
+                    continue;
+                default:
+                    return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,23 @@
+package me.carda.awesome_notifications_fcm.core.interpreters;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
+
+/// Remote instruction executed when a push contains its registered key.
+/// Commands run before the push content is interpreted and never build a
+/// notification. The key is removed from the push data after the execution.
+/// Work that can be shared with other commands of the same push, such as
+/// dismissing notifications, should be registered into the batch instead.
+public interface RemoteCommand {
+    void execute(
+            @NonNull Context context,
+            @Nullable String argument,
+            @NonNull Bundle extras,
+            @NonNull RemoteCommandBatch batch
+    ) throws AwesomeNotificationsException;
+}
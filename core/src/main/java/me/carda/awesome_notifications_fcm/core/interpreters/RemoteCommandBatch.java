@@ -0,0 +1,59 @@
+package me.carda.awesome_notifications_fcm.core.interpreters;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
+import me.carda.awesome_notifications.core.exceptions.ExceptionCode;
+import me.carda.awesome_notifications.core.exceptions.ExceptionFactory;
+import me.carda.awesome_notifications.core.logs.Logger;
+
+/// Work shared by the remote commands of one push. Commands register their
+/// work here instead of running it, so it runs only once, after every
+/// command of the push was executed.
+public final class RemoteCommandBatch {
+
+    private static final String TAG = "RemoteCommandBatch";
+
+    public interface Work {
+        void execute(@NonNull Context context) throws AwesomeNotificationsException;
+    }
+
+    private final Map<Class<? extends Work>, Work> pendingWork = new LinkedHashMap<>();
+
+    RemoteCommandBatch(){}
+
+    /// Returns the work of this class already registered by another command, if any
+    @Nullable
+    public <T extends Work> T getWork(@NonNull Class<T> workClass) {
+        return workClass.cast(pendingWork.get(workClass));
+    }
+
+    public void addWork(@NonNull Work work) {
+        pendingWork.put(work.getClass(), work);
+    }
+
+    void execute(@NonNull Context context) {
+        for (Work work : pendingWork.values()) {
+            try {
+                work.execute(context);
+            } catch (AwesomeNotificationsException exception) {
+                Logger.e(TAG, "Remote command work failed: " + exception.getMessage());
+            } catch (Exception exception) {
+                ExceptionFactory
+                        .getInstance()
+                        .registerNewAwesomeException(
+                                TAG,
+                                ExceptionCode.CODE_UNKNOWN_EXCEPTION,
+                                ExceptionCode.DETAILED_UNEXPECTED_ERROR+"."+exception.getClass().getSimpleName(),
+                                exception);
+            }
+        }
+        pendingWork.clear();
+    }
+}
@@ -0,0 +1,118 @@
+package me.carda.awesome_notifications_fcm.core.interpreters;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import me.carda.awesome_notifications.core.AwesomeNotifications;
+import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
+import me.carda.awesome_notifications.core.exceptions.ExceptionCode;
+import me.carda.awesome_notifications.core.exceptions.ExceptionFactory;
+import me.carda.awesome_notifications.core.logs.Logger;
+import me.carda.awesome_notifications.core.utils.StringUtils;
+import me.carda.awesome_notifications_fcm.core.FcmDefinitions;
+
+/// Maps the RPC keys of remote instructions into their commands. Only the
+/// registered keys are looked up on each push, so pushes without any RPC
+/// cost one hash lookup per registered command.
+public final class RemoteCommandRegistry {
+
+    private static final String TAG = "RemoteCommandRegistry";
+
+    // Replaced on each registration, so pushes can read it without locks
+    private volatile Map<String, RemoteCommand> commands;
+
+    // ************** SINGLETON PATTERN ***********************
+
+    private static RemoteCommandRegistry instance;
+
+    private RemoteCommandRegistry(){
+        Map<String, RemoteCommand> defaultCommands = new HashMap<>();
+        defaultCommands.put(FcmDefinitions.RPC_DISMISS, new DismissCommand(DismissCommand.Target.Ids));
+        defaultCommands.put(FcmDefinitions.RPC_DISMISS_BY_CHANNEL, new DismissCommand(DismissCommand.Target.Channels));
+        defaultCommands.put(FcmDefinitions.RPC_DISMISS_BY_GROUP, new DismissCommand(DismissCommand.Target.Groups));
+        defaultCommands.put(FcmDefinitions.RPC_DISMISS_BY_MESSAGE_ID, new DismissCommand(DismissCommand.Target.MessageIds));
+        defaultCommands.put(FcmDefinitions.RPC_DISMISS_ALL, new DismissCommand(DismissCommand.Target.All));
+        commands = defaultCommands;
+    }
+
+    public static synchronized RemoteCommandRegistry getInstance() {
+        if (instance == null)
+            instance = new RemoteCommandRegistry();
+        return instance;
+    }
+
+    // ********************************************************
+
+    public synchronized void registerCommand(
+            @NonNull String rpcKey,
+            @NonNull RemoteCommand command
+    ) throws AwesomeNotificationsException {
+        if (StringUtils.getInstance().isNullOrEmpty(rpcKey))
+            throw ExceptionFactory
+                    .getInstance()
+                    .createNewAwesomeException(
+                            TAG,
+                            ExceptionCode.CODE_INVALID_ARGUMENTS,
+                            "Remote commands require a valid RPC key",
+                            ExceptionCode.DETAILED_INVALID_ARGUMENTS+".remoteCommand.rpcKey");
+
+        Map<String, RemoteCommand> newCommands = new HashMap<>(commands);
+        if (newCommands.put(rpcKey, command) != null)
+            Logger.w(TAG, "The remote command '" + rpcKey + "' was replaced");
+        commands = newCommands;
+    }
+
+    public synchronized void unregisterCommand(@NonNull String rpcKey) {
+        if (!commands.containsKey(rpcKey)) return;
+
+        Map<String, RemoteCommand> newCommands = new HashMap<>(commands);
+        newCommands.remove(rpcKey);
+        commands = newCommands;
+    }
+
+    /// Executes the commands present in the extras, removing their keys.
+    /// Returns how many commands were executed.
+    int executeCommands(
+            @NonNull Context context,
+            @NonNull Bundle extras
+    ) throws AwesomeNotificationsException {
+        Map<String, RemoteCommand> currentCommands = commands;
+        RemoteCommandBatch batch = new RemoteCommandBatch();
+        int executedCommands = 0;
+
+        for (Map.Entry<String, RemoteCommand> entry : currentCommands.entrySet()) {
+            String rpcKey = entry.getKey();
+            if (!extras.containsKey(rpcKey)) continue;
+
+            String argument = extras.getString(rpcKey);
+            extras.remove(rpcKey);
+            executedCommands++;
+
+            if (AwesomeNotifications.debug)
+                Logger.d(TAG, "Executing remote command '" + rpcKey + "'");
+
+            try {
+                entry.getValue().execute(context, argument, extras, batch);
+            } catch (AwesomeNotificationsException exception) {
+                Logger.e(TAG, "Remote command '" + rpcKey + "' failed: " + exception.getMessage());
+            } catch (Exception exception) {
+                ExceptionFactory
+                        .getInstance()
+                        .registerNewAwesomeException(
+                                TAG,
+                                ExceptionCode.CODE_UNKNOWN_EXCEPTION,
+                                ExceptionCode.DETAILED_UNEXPECTED_ERROR+"."+exception.getClass().getSimpleName(),
+                                exception);
+            }
+        }
+
+        batch.execute(context);
+
+        return executedCommands;
+    }
+}
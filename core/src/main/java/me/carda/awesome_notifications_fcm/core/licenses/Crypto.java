@@ -19,10 +19,15 @@ final class Crypto {
         "9OWQOR+0/2IDY7DrsXiw9n0Fm1kEGVzzD5EubglhOdg7yFpoF1iN7hpFja2BBldp" +
         "XSnFAPBN0uAgiBdZAgMBAAE=";
 
+    private static volatile PublicKey cachedPublicKey;
+
     @Nullable
     static PublicKey getPublicKey() throws InvalidKeySpecException, NoSuchAlgorithmException {
-        return KeyFactory.getInstance(keyType).generatePublic(
-            new X509EncodedKeySpec(Encoder.decodeBase64(publicKey))
-        );
+        PublicKey key = cachedPublicKey;
+        if (key == null)
+            cachedPublicKey = key = KeyFactory.getInstance(keyType).generatePublic(
+                new X509EncodedKeySpec(Encoder.decodeBase64(publicKey))
+            );
+        return key;
     }
 }
@@ -6,6 +6,7 @@ import android.content.pm.PackageManager;
 import android.util.Base64;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
@@ -13,6 +14,8 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import me.carda.awesome_notifications.core.AwesomeNotifications;
@@ -20,6 +23,8 @@ import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsExcept
 import me.carda.awesome_notifications.core.logs.Logger;
 import me.carda.awesome_notifications.core.utils.StringUtils;
 import me.carda.awesome_notifications_fcm.core.managers.FcmDefaultsManager;
+import me.carda.awesome_notifications_fcm.core.metrics.FcmMetricsManager;
+import me.carda.awesome_notifications_fcm.core.metrics.PipelineStage;
 
 public final class LicenseManager {
     public static final String TAG = "LicenseManager";
@@ -31,7 +36,7 @@ public final class LicenseManager {
 
     protected LicenseManager(){}
 
-    public static LicenseManager getInstance() {
+    public static synchronized LicenseManager getInstance() {
         if(instance == null)
             instance = new LicenseManager();
         return instance;
@@ -39,11 +44,105 @@ public final class LicenseManager {
 
     // ********************************************************
 
+    // Verdict of the last license validation and a copy of the keys used on it
+    private static final class LicenseVerdict {
+        @Nullable final List<String> licenseKeys;
+        final boolean isValid;
+
+        LicenseVerdict(@Nullable List<String> licenseKeys, boolean isValid) {
+            this.licenseKeys = licenseKeys == null
+                    ? null
+                    : Collections.unmodifiableList(new ArrayList<>(licenseKeys));
+            this.isValid = isValid;
+        }
+
+        boolean matches(@Nullable List<String> licenseKeys) {
+            return this.licenseKeys == null
+                    ? licenseKeys == null
+                    : this.licenseKeys.equals(licenseKeys);
+        }
+    }
+
+    private volatile Boolean isDebuggable;
+    private volatile LicenseVerdict licenseVerdict;
+
+    /// Returns true if the notification content must be marked as demo. The
+    /// debuggable flag is computed once per process, and the license verdict is
+    /// reused while the current license keys match the ones it was computed from.
+    public boolean isWatermarkRequired(
+            @NonNull Context context
+    ) throws AwesomeNotificationsException {
+        if (isApplicationDebuggable(context)) return false;
+
+        List<String> licenseKeys = FcmDefaultsManager.getLicenseKeys(context);
+
+        LicenseVerdict verdict = licenseVerdict;
+        if (verdict != null && verdict.matches(licenseKeys))
+            return !verdict.isValid;
+
+        return !validateLicenseKeys(context, licenseKeys);
+    }
+
+    /// Discards the cached verdict if the license keys are different from the validated ones
+    public void onLicenseKeysChanged(@Nullable List<String> licenseKeys) {
+        LicenseVerdict verdict = licenseVerdict;
+        if (verdict != null && !verdict.matches(licenseKeys))
+            licenseVerdict = null;
+    }
+
+    public boolean isApplicationDebuggable(@NonNull Context context) {
+        Boolean debuggable = isDebuggable;
+        if (debuggable != null) return debuggable;
+
+        debuggable = false;
+        try {
+            debuggable = ( 0 != (
+                    context
+                            .getPackageManager()
+                            .getApplicationInfo(
+                                    AwesomeNotifications.getPackageName(context),
+                                    ApplicationInfo.FLAG_DEBUGGABLE)
+                            .flags & ApplicationInfo.FLAG_DEBUGGABLE ) );
+        } catch (PackageManager.NameNotFoundException e) {
+            e.printStackTrace();
+        }
+
+        isDebuggable = debuggable;
+        return debuggable;
+    }
+
+    /// The verdict is computed and stored for the given keys, so a verdict
+    /// computed while the keys were being changed never matches the new keys
+    private synchronized boolean validateLicenseKeys(
+            @NonNull Context context,
+            @Nullable List<String> licenseKeys
+    ) {
+        LicenseVerdict verdict = licenseVerdict;
+        if (verdict != null && verdict.matches(licenseKeys))
+            return verdict.isValid;
+
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+        long startTime = metricsManager.beginStage(PipelineStage.LicenseVerification);
+        try {
+            boolean isValid = printValidationTest(context, licenseKeys);
+            licenseVerdict = new LicenseVerdict(licenseKeys, isValid);
+            return isValid;
+        } finally {
+            metricsManager.endStage(PipelineStage.LicenseVerification, startTime);
+        }
+    }
+
     public boolean isLicenseKeyValid(
         @NonNull Context context
     ) throws AwesomeNotificationsException
     {
-        List<String> licenseKeys = FcmDefaultsManager.getLicenseKeys(context);
+        return isLicenseKeyValid(context, FcmDefaultsManager.getLicenseKeys(context));
+    }
+
+    private boolean isLicenseKeyValid(
+        @NonNull Context context,
+        @Nullable List<String> licenseKeys
+    ) {
         if (licenseKeys == null) {
             printLicenseMessageError(context);
             return false;
@@ -65,7 +164,7 @@ public final class LicenseManager {
                         continue;
                     }
                     base64Encoded = licenseKey
-                            .replaceFirst("single:[\\w\\.\\+]+:", "");
+                            .substring(("single:"+APP_VERSION+":").length());
                 }
                 else {
                     base64Encoded = licenseKey;
@@ -107,9 +206,14 @@ public final class LicenseManager {
     public boolean printValidationTest(
             @NonNull Context context
     ) throws AwesomeNotificationsException {
-        if(!LicenseManager
-                .getInstance()
-                .isLicenseKeyValid(context)) {
+        return printValidationTest(context, FcmDefaultsManager.getLicenseKeys(context));
+    }
+
+    private boolean printValidationTest(
+            @NonNull Context context,
+            @Nullable List<String> licenseKeys
+    ) {
+        if(!isLicenseKeyValid(context, licenseKeys)) {
             printLicenseMessageError(context);
             return false;
         }
@@ -128,20 +232,7 @@ public final class LicenseManager {
                         "visit https://www.awesome-notifications.carda.me#prices";
 
 
-        boolean isDebuggable = false;
-        try {
-            isDebuggable = ( 0 != (
-                    context
-                            .getPackageManager()
-                            .getApplicationInfo(
-                                    AwesomeNotifications.getPackageName(context),
-                                    ApplicationInfo.FLAG_DEBUGGABLE)
-                            .flags & ApplicationInfo.FLAG_DEBUGGABLE ) );
-        } catch (PackageManager.NameNotFoundException e) {
-            e.printStackTrace();
-        }
-
-        if(isDebuggable) {
+        if(isApplicationDebuggable(context)) {
             Logger.i(TAG, licenseMessage);
         } else {
             Logger.e(TAG, licenseMessage);
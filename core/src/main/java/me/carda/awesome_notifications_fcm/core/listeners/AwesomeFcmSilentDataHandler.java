@@ -0,0 +1,14 @@
+package me.carda.awesome_notifications_fcm.core.listeners;
+
+import androidx.annotation.NonNull;
+
+import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
+import me.carda.awesome_notifications_fcm.core.models.SilentDataModel;
+
+/// Takes over the silent data while the app is alive, before it is queued to
+/// the background service. Handlers are always called on the main thread.
+public interface AwesomeFcmSilentDataHandler {
+    /// Returns true only if the silent data was fully handled. Returning false,
+    /// or throwing, leaves it to the next handler and then to the background job.
+    public boolean onSilentDataReceived(@NonNull SilentDataModel silentData) throws AwesomeNotificationsException;
+}
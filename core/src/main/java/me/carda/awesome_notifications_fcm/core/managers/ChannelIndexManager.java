@@ -0,0 +1,269 @@
+package me.carda.awesome_notifications_fcm.core.managers;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationManagerCompat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.carda.awesome_notifications.core.AwesomeNotifications;
+import me.carda.awesome_notifications.core.enumerators.NotificationImportance;
+import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
+import me.carda.awesome_notifications.core.logs.Logger;
+import me.carda.awesome_notifications.core.managers.ChannelManager;
+import me.carda.awesome_notifications.core.models.NotificationChannelModel;
+import me.carda.awesome_notifications_fcm.core.metrics.FcmMetricsManager;
+
+/// In memory index of the notification channels, holding the default channel
+/// key, the enabled state of each channel and the notification permission.
+/// The channel repository and the system channels are read once per reload,
+/// so each push lookup is a single hash read. The index is reloaded after its
+/// time to live or after being invalidated. A channel missing from the index
+/// is always looked up on the channel repository, so new channels are found.
+public final class ChannelIndexManager {
+
+    public static final String TAG = "ChannelIndexManager";
+    public static final String COUNTER_CHANNEL_INDEX_RELOADS = "channelIndexReloads";
+
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 60 * 1000L;
+    private static final long MIN_RELOAD_INTERVAL_MILLIS = 1000L;
+
+    private static final class ChannelIndex {
+        final boolean areNotificationsEnabled;
+        final String defaultChannelKey;
+        final Map<String, Boolean> enabledChannels;
+        final long loadedAt;
+
+        ChannelIndex(
+                boolean areNotificationsEnabled,
+                @Nullable String defaultChannelKey,
+                @NonNull Map<String, Boolean> enabledChannels,
+                long loadedAt
+        ) {
+            this.areNotificationsEnabled = areNotificationsEnabled;
+            this.defaultChannelKey = defaultChannelKey;
+            this.enabledChannels = enabledChannels;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private volatile ChannelIndex channelIndex;
+    private volatile long timeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+
+    // ************** SINGLETON PATTERN ***********************
+
+    private static ChannelIndexManager instance;
+
+    private ChannelIndexManager(){}
+    public static synchronized ChannelIndexManager getInstance() {
+        if (instance == null)
+            instance = new ChannelIndexManager();
+        return instance;
+    }
+
+    // ********************************************************
+
+    public void setTimeToLive(long timeToLiveMillis) {
+        this.timeToLiveMillis = Math.max(0, timeToLiveMillis);
+    }
+
+    /// Forces the next lookup to reload the channels
+    public void invalidate() {
+        channelIndex = null;
+    }
+
+    /// Returns the state of the app notification permission. Only a granted
+    /// permission is trusted from the cache, a revoked one is read again.
+    public boolean areNotificationsEnabled(@NonNull Context context) throws AwesomeNotificationsException {
+        if (getChannelIndex(context).areNotificationsEnabled) return true;
+
+        boolean areNotificationsEnabled = NotificationManagerCompat
+                .from(context)
+                .areNotificationsEnabled();
+
+        if (areNotificationsEnabled)
+            invalidate();
+
+        return areNotificationsEnabled;
+    }
+
+    /// Returns the key of the first registered channel, or null if there is no channel
+    @Nullable
+    public String getDefaultChannelKey(@NonNull Context context) throws AwesomeNotificationsException {
+        String defaultChannelKey = getChannelIndex(context).defaultChannelKey;
+        if (defaultChannelKey != null) return defaultChannelKey;
+
+        // The first channel could be created after the last reload
+        invalidate();
+        return getChannelIndex(context).defaultChannelKey;
+    }
+
+    public boolean channelExists(
+            @NonNull Context context,
+            @Nullable String channelKey
+    ) throws AwesomeNotificationsException {
+        return getChannelState(context, channelKey) != null;
+    }
+
+    /// Returns true only if the channel exists and was disabled, either by its
+    /// importance or by the user on the system settings. Only an enabled
+    /// channel is trusted from the cache, a disabled one is read again.
+    public boolean isChannelDisabled(
+            @NonNull Context context,
+            @Nullable String channelKey
+    ) throws AwesomeNotificationsException {
+        Boolean isEnabled = getChannelState(context, channelKey);
+        if (isEnabled == null || isEnabled) return false;
+
+        isEnabled = readChannelState(context, channelKey);
+        if (isEnabled == null || isEnabled) {
+            invalidate();
+            return false;
+        }
+        return true;
+    }
+
+    @Nullable
+    private Boolean getChannelState(
+            @NonNull Context context,
+            @Nullable String channelKey
+    ) throws AwesomeNotificationsException {
+        if (channelKey == null) return null;
+
+        Boolean isEnabled = getChannelIndex(context).enabledChannels.get(channelKey);
+        if (isEnabled != null) return isEnabled;
+
+        // The channel could be created after the last reload, so a miss is
+        // always confirmed on the channel repository
+        isEnabled = readChannelState(context, channelKey);
+        if (isEnabled != null)
+            invalidate();
+
+        return isEnabled;
+    }
+
+    @Nullable
+    private static Boolean readChannelState(
+            @NonNull Context context,
+            @NonNull String channelKey
+    ) throws AwesomeNotificationsException {
+        NotificationChannelModel channel = ChannelManager
+                .getInstance()
+                .getChannelByKey(context, channelKey);
+
+        if (channel == null) return null;
+        return isChannelEnabled(channel, getSystemChannelImportance(context, channelKey));
+    }
+
+    private static boolean isChannelEnabled(
+            @NonNull NotificationChannelModel channel,
+            @Nullable Integer systemImportance
+    ) {
+        return channel.importance != NotificationImportance.None &&
+                (systemImportance == null || systemImportance != NotificationManager.IMPORTANCE_NONE);
+    }
+
+    @NonNull
+    private ChannelIndex getChannelIndex(@NonNull Context context) throws AwesomeNotificationsException {
+        ChannelIndex index = channelIndex;
+        if (index != null && SystemClock.elapsedRealtime() - index.loadedAt < timeToLiveMillis)
+            return index;
+        return reloadChannelIndex(context);
+    }
+
+    @NonNull
+    private synchronized ChannelIndex reloadChannelIndex(@NonNull Context context) throws AwesomeNotificationsException {
+        long now = SystemClock.elapsedRealtime();
+
+        // Another thread could have reloaded it while this one was waiting
+        ChannelIndex index = channelIndex;
+        if (index != null && now - index.loadedAt < MIN_RELOAD_INTERVAL_MILLIS)
+            return index;
+
+        List<NotificationChannelModel> channels = ChannelManager
+                .getInstance()
+                .listChannels(context);
+
+        Map<String, Integer> systemImportances = getSystemChannelImportances(context);
+        Map<String, Boolean> enabledChannels = new HashMap<>();
+        String defaultChannelKey = null;
+
+        if (channels != null)
+            for (NotificationChannelModel channel : channels) {
+                if (channel == null || channel.channelKey == null) continue;
+                if (defaultChannelKey == null)
+                    defaultChannelKey = channel.channelKey;
+
+                enabledChannels.put(
+                        channel.channelKey,
+                        isChannelEnabled(channel, systemImportances.get(channel.channelKey)));
+            }
+
+        boolean areNotificationsEnabled = NotificationManagerCompat
+                .from(context)
+                .areNotificationsEnabled();
+
+        index = new ChannelIndex(areNotificationsEnabled, defaultChannelKey, enabledChannels, now);
+        channelIndex = index;
+
+        FcmMetricsManager
+                .getInstance()
+                .incrementCounter(COUNTER_CHANNEL_INDEX_RELOADS);
+
+        if (AwesomeNotifications.debug)
+            Logger.d(TAG, enabledChannels.size() + " notification channels indexed");
+
+        return index;
+    }
+
+    @Nullable
+    private static Integer getSystemChannelImportance(
+            @NonNull Context context,
+            @NonNull String channelKey
+    ) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O)
+            return null;
+
+        NotificationManager notificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (notificationManager == null)
+            return null;
+
+        try {
+            NotificationChannel channel = notificationManager.getNotificationChannel(channelKey);
+            return channel == null ? null : channel.getImportance();
+        } catch (Exception exception) {
+            Logger.w(TAG, "System notification channel could not be read: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    @NonNull
+    private static Map<String, Integer> getSystemChannelImportances(@NonNull Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O)
+            return Collections.emptyMap();
+
+        NotificationManager notificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (notificationManager == null)
+            return Collections.emptyMap();
+
+        Map<String, Integer> importances = new HashMap<>();
+        try {
+            for (NotificationChannel channel : notificationManager.getNotificationChannels())
+                importances.put(channel.getId(), channel.getImportance());
+        } catch (Exception exception) {
+            Logger.w(TAG, "System notification channels could not be read: " + exception.getMessage());
+        }
+        return importances;
+    }
+}
@@ -1,21 +1,49 @@
 package me.carda.awesome_notifications_fcm.core.managers;
 
 import android.content.Context;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
 
 import me.carda.awesome_notifications.core.AwesomeNotificationsExtension;
 import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
+import me.carda.awesome_notifications.core.logs.Logger;
 import me.carda.awesome_notifications.core.managers.RepositoryManager;
 import me.carda.awesome_notifications.core.utils.StringUtils;
 import me.carda.awesome_notifications_fcm.core.FcmDefinitions;
+import me.carda.awesome_notifications_fcm.core.licenses.LicenseManager;
 import me.carda.awesome_notifications_fcm.core.models.FcmDefaultsModel;
+import me.carda.awesome_notifications_fcm.core.threads.FcmDelayedExecutor;
 
+/// The FCM defaults are read from an immutable snapshot shared by the whole
+/// process, so reads never deserialize the repository nor take any lock.
+/// Changes replace the snapshot immediately and are written to the repository
+/// in background, coalescing close changes, until commitChanges writes them
+/// before returning. Every write also bumps a version stamp file, which is checked
+/// at most once per second to detect changes made by other processes.
+/// The defaults are stored with the compact binary encoding of FcmDefaultsModel.
+/// Defaults stored as json by previous versions are still read, and moved to
+/// the binary file on the next write.
 public final class FcmDefaultsManager {
 
+    private static final String TAG = "FcmDefaultsManager";
+
+    private static final String STAMP_FILE_NAME = "awesome_fcm_defaults.stamp";
+    private static final String DEFAULTS_FILE_NAME = "awesome_fcm_defaults.bin";
+    private static final long STAMP_CHECK_INTERVAL_MILLIS = 1000;
+    private static final long WRITE_BEHIND_DELAY_MILLIS = 100;
+
     private static final RepositoryManager<FcmDefaultsModel> shared
                     = new RepositoryManager<>(
                             StringUtils.getInstance(),
@@ -23,8 +51,85 @@ public final class FcmDefaultsManager {
                             FcmDefaultsModel.class,
                             "FcmDefaultsModel");
 
+    /// Immutable view of the FCM defaults, with the callback handles already parsed
+    public static final class Snapshot {
+        public final long silentCallbackHandle;
+        public final long dartCallbackHandle;
+        @Nullable public final List<String> licenseKeys;
+        @Nullable public final String backgroundHandleClass;
+
+        // Handles as they were stored, so unset handles are kept as null
+        @Nullable final String silentDataCallback;
+        @Nullable final String reverseDartCallback;
+
+        final long stamp;
+
+        Snapshot(@NonNull FcmDefaultsModel defaults, long stamp) {
+            this.silentDataCallback = defaults.silentDataCallback;
+            this.reverseDartCallback = defaults.reverseDartCallback;
+            this.silentCallbackHandle = parseHandle(defaults.silentDataCallback);
+            this.dartCallbackHandle = parseHandle(defaults.reverseDartCallback);
+            this.licenseKeys = defaults.licenseKeys == null
+                    ? null
+                    : Collections.unmodifiableList(new ArrayList<>(defaults.licenseKeys));
+            this.backgroundHandleClass = defaults.backgroundHandleClass;
+            this.stamp = stamp;
+        }
+
+        private Snapshot(@NonNull Snapshot snapshot, long stamp) {
+            this.silentDataCallback = snapshot.silentDataCallback;
+            this.reverseDartCallback = snapshot.reverseDartCallback;
+            this.silentCallbackHandle = snapshot.silentCallbackHandle;
+            this.dartCallbackHandle = snapshot.dartCallbackHandle;
+            this.licenseKeys = snapshot.licenseKeys;
+            this.backgroundHandleClass = snapshot.backgroundHandleClass;
+            this.stamp = stamp;
+        }
+
+        @NonNull
+        FcmDefaultsModel toModel() {
+            FcmDefaultsModel defaults = new FcmDefaultsModel();
+            defaults.silentDataCallback = silentDataCallback;
+            defaults.reverseDartCallback = reverseDartCallback;
+            defaults.licenseKeys = licenseKeys == null ? null : new ArrayList<>(licenseKeys);
+            defaults.backgroundHandleClass = backgroundHandleClass;
+            return defaults;
+        }
+
+        private static long parseHandle(@Nullable String handle) {
+            if (handle == null) return 0L;
+            try {
+                return Long.parseLong(handle);
+            } catch (NumberFormatException exception) {
+                return 0L;
+            }
+        }
+    }
+
+    private static volatile Snapshot snapshot;
+    private static volatile long lastStampCheckMillis;
+
+    private static final Object writeLock = new Object();
+    private static FcmDefaultsModel pendingWrite;
+    private static boolean isRemovalPending;
+    private static ScheduledFuture<?> scheduledWrite;
+    private static boolean isLegacyStored;
+
+    private FcmDefaultsManager(){}
+
     public static Boolean removeDefault(Context context) throws AwesomeNotificationsException {
-        return shared.remove(context, FcmDefinitions.SHARED_FCM_DEFAULTS, "Defaults");
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            snapshot = new Snapshot(new FcmDefaultsModel(), current == null ? 0 : current.stamp);
+            pendingWrite = null;
+            isRemovalPending = true;
+            scheduleWrite(context, WRITE_BEHIND_DELAY_MILLIS);
+        }
+
+        LicenseManager
+                .getInstance()
+                .onLicenseKeysChanged(null);
+        return true;
     }
 
     public static void saveDefault(
@@ -33,56 +138,248 @@ public final class FcmDefaultsManager {
             @Nullable Long dartCallback,
             @Nullable Long silentCallback
     ) throws AwesomeNotificationsException {
-        FcmDefaultsModel defaults = getDefaults(context);
+        synchronized (writeLock) {
+            FcmDefaultsModel defaults = getDefaults(context);
+
+            defaults.licenseKeys = licenseKeys;
+            defaults.reverseDartCallback = dartCallback == null ? null : dartCallback.toString();
+            defaults.silentDataCallback = silentCallback == null ? null : silentCallback.toString();
 
-        defaults.licenseKeys = licenseKeys;
-        defaults.reverseDartCallback = dartCallback == null ? null : dartCallback.toString();
-        defaults.silentDataCallback = silentCallback == null ? null : silentCallback.toString();
+            saveDefault(context, defaults);
+        }
 
-        saveDefault(context, defaults);
+        LicenseManager
+                .getInstance()
+                .onLicenseKeysChanged(licenseKeys);
     }
 
-    private static void saveDefault(Context context, FcmDefaultsModel defaults) throws AwesomeNotificationsException {
-        shared.set(context, FcmDefinitions.SHARED_FCM_DEFAULTS, "Defaults", defaults);
+    private static void saveDefault(Context context, FcmDefaultsModel defaults) {
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            snapshot = new Snapshot(defaults, current == null ? 0 : current.stamp);
+            pendingWrite = defaults;
+            isRemovalPending = false;
+            scheduleWrite(context, WRITE_BEHIND_DELAY_MILLIS);
+        }
     }
 
+    /// Returns a mutable copy of the current defaults
     public static FcmDefaultsModel getDefaults(Context context) throws AwesomeNotificationsException {
-        FcmDefaultsModel defaults = shared.get(context, FcmDefinitions.SHARED_FCM_DEFAULTS, "Defaults");
-        return defaults != null ? defaults : new FcmDefaultsModel();
+        return getSnapshot(context).toModel();
+    }
+
+    @NonNull
+    public static Snapshot getSnapshot(@NonNull Context context) throws AwesomeNotificationsException {
+        Snapshot current = snapshot;
+        if (current != null &&
+                SystemClock.elapsedRealtime() - lastStampCheckMillis < STAMP_CHECK_INTERVAL_MILLIS)
+            return current;
+        return refreshSnapshot(context);
     }
 
     public static long getSilentCallbackDispatcher(Context context) throws AwesomeNotificationsException {
-        FcmDefaultsModel defaults = getDefaults(context);
-        return (defaults.silentDataCallback != null) ? Long.parseLong(defaults.silentDataCallback) : 0L;
+        return getSnapshot(context).silentCallbackHandle;
     }
 
     public static long getDartCallbackDispatcher(Context context) throws AwesomeNotificationsException {
-        FcmDefaultsModel defaults = getDefaults(context);
-        return (defaults.reverseDartCallback != null) ? Long.parseLong(defaults.reverseDartCallback) : 0L;
+        return getSnapshot(context).dartCallbackHandle;
     }
 
     public static List<String> getLicenseKeys(Context context) throws AwesomeNotificationsException {
-        FcmDefaultsModel defaults = getDefaults(context);
-        return defaults.licenseKeys;
+        return getSnapshot(context).licenseKeys;
     }
 
+    /// Writes the pending changes before returning, so the callback handles and
+    /// license keys survive the process being killed right after
     public static void commitChanges(Context context) throws AwesomeNotificationsException {
-        shared.commit(context);
+        flushChanges(context);
+    }
+
+    /// Writes the pending changes before returning
+    public static void flushChanges(Context context) throws AwesomeNotificationsException {
+        synchronized (writeLock) {
+            if (scheduledWrite != null)
+                scheduledWrite.cancel(false);
+            scheduledWrite = null;
+            writePendingChanges(context);
+        }
     }
 
     public static void setAwesomeExtensionClassName(
             Context context,
             Class<? extends AwesomeNotificationsExtension> backgroundHandleClass
     ) throws AwesomeNotificationsException {
-        FcmDefaultsModel defaults = getDefaults(context);
-        defaults.backgroundHandleClass = backgroundHandleClass.getName();
-        saveDefault(context, defaults);
+        synchronized (writeLock) {
+            FcmDefaultsModel defaults = getDefaults(context);
+            defaults.backgroundHandleClass = backgroundHandleClass.getName();
+            saveDefault(context, defaults);
+        }
     }
 
     public static String getAwesomeExtensionClassName(
             Context context
     ) throws AwesomeNotificationsException {
-        FcmDefaultsModel defaults = getDefaults(context);
-        return defaults.backgroundHandleClass;
+        return getSnapshot(context).backgroundHandleClass;
+    }
+
+    @NonNull
+    private static Snapshot refreshSnapshot(@NonNull Context context) throws AwesomeNotificationsException {
+        List<String> changedLicenseKeys;
+        Snapshot refreshed;
+
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            long stamp = readStamp(context);
+            lastStampCheckMillis = SystemClock.elapsedRealtime();
+
+            // Local changes not written yet are newer than anything on the repository
+            if (current != null && (current.stamp == stamp || pendingWrite != null || isRemovalPending))
+                return current;
+
+            FcmDefaultsModel defaults = readDefaults(context);
+            refreshed = new Snapshot(defaults != null ? defaults : new FcmDefaultsModel(), stamp);
+            snapshot = refreshed;
+
+            if (current == null) return refreshed;
+
+            boolean areLicenseKeysEqual = current.licenseKeys == null
+                    ? refreshed.licenseKeys == null
+                    : current.licenseKeys.equals(refreshed.licenseKeys);
+            if (areLicenseKeysEqual) return refreshed;
+            changedLicenseKeys = refreshed.licenseKeys;
+        }
+
+        // Changed by another process
+        LicenseManager
+                .getInstance()
+                .onLicenseKeysChanged(changedLicenseKeys);
+        return refreshed;
+    }
+
+    private static void scheduleWrite(@NonNull Context context, long delayMillis) {
+        if (scheduledWrite != null) return;
+
+        final Context applicationContext = context.getApplicationContext();
+        scheduledWrite = FcmDelayedExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (writeLock) {
+                    scheduledWrite = null;
+                    try {
+                        writePendingChanges(applicationContext);
+                    } catch (AwesomeNotificationsException exception) {
+                        Logger.e(TAG, "FCM defaults could not be saved: " + exception.getMessage());
+                    }
+                }
+            }
+        }, delayMillis);
+    }
+
+    // Must be called holding the write lock
+    private static void writePendingChanges(@NonNull Context context) throws AwesomeNotificationsException {
+        if (pendingWrite == null && !isRemovalPending) return;
+
+        if (isRemovalPending) {
+            deleteDefaultsFile(context);
+            removeLegacyDefaults(context);
+        } else if (writeDefaultsFile(context, pendingWrite)) {
+            if (isLegacyStored)
+                removeLegacyDefaults(context);
+        } else {
+            // Keeps the json storage as fallback, so the changes are not lost
+            deleteDefaultsFile(context);
+            shared.set(context, FcmDefinitions.SHARED_FCM_DEFAULTS, "Defaults", pendingWrite);
+            shared.commit(context);
+            isLegacyStored = true;
+        }
+
+        pendingWrite = null;
+        isRemovalPending = false;
+
+        long stamp = writeStamp(context);
+        Snapshot current = snapshot;
+        if (current != null)
+            snapshot = new Snapshot(current, stamp);
+    }
+
+    // Must be called holding the write lock
+    @Nullable
+    private static FcmDefaultsModel readDefaults(@NonNull Context context) throws AwesomeNotificationsException {
+        File defaultsFile = new File(context.getFilesDir(), DEFAULTS_FILE_NAME);
+        if (defaultsFile.exists()) {
+            try (FileInputStream inputStream = new FileInputStream(defaultsFile)) {
+                byte[] bytes = new byte[(int) defaultsFile.length()];
+                int offset = 0, read;
+                while (offset < bytes.length &&
+                        (read = inputStream.read(bytes, offset, bytes.length - offset)) > 0)
+                    offset += read;
+
+                FcmDefaultsModel defaults = new FcmDefaultsModel().fromBytes(bytes);
+                if (defaults != null) {
+                    isLegacyStored = false;
+                    return defaults;
+                }
+            } catch (IOException exception) {
+                Logger.e(TAG, "FCM defaults could not be read: " + exception.getMessage());
+            }
+        }
+
+        FcmDefaultsModel defaults = shared.get(context, FcmDefinitions.SHARED_FCM_DEFAULTS, "Defaults");
+        isLegacyStored = defaults != null;
+        return defaults;
+    }
+
+    private static boolean writeDefaultsFile(@NonNull Context context, @NonNull FcmDefaultsModel defaults) {
+        File defaultsFile = new File(context.getFilesDir(), DEFAULTS_FILE_NAME);
+        File temporaryFile = new File(defaultsFile.getPath() + ".tmp");
+
+        try (FileOutputStream outputStream = new FileOutputStream(temporaryFile)) {
+            outputStream.write(defaults.toBytes());
+            outputStream.getFD().sync();
+        } catch (IOException exception) {
+            Logger.e(TAG, "FCM defaults could not be written: " + exception.getMessage());
+            return false;
+        }
+
+        // Replaced at once, so other processes never read a partial file
+        if (temporaryFile.renameTo(defaultsFile)) return true;
+
+        Logger.e(TAG, "FCM defaults file could not be replaced");
+        return false;
+    }
+
+    private static void removeLegacyDefaults(@NonNull Context context) throws AwesomeNotificationsException {
+        shared.remove(context, FcmDefinitions.SHARED_FCM_DEFAULTS, "Defaults");
+        shared.commit(context);
+        isLegacyStored = false;
+    }
+
+    private static void deleteDefaultsFile(@NonNull Context context) {
+        File defaultsFile = new File(context.getFilesDir(), DEFAULTS_FILE_NAME);
+        if (defaultsFile.exists() && !defaultsFile.delete())
+            Logger.e(TAG, "FCM defaults file could not be deleted");
+    }
+
+    private static long readStamp(@NonNull Context context) {
+        File stampFile = new File(context.getNoBackupFilesDir(), STAMP_FILE_NAME);
+        if (!stampFile.exists()) return 0;
+
+        try (RandomAccessFile file = new RandomAccessFile(stampFile, "r")) {
+            return file.length() >= 8 ? file.readLong() : 0;
+        } catch (IOException exception) {
+            return 0;
+        }
+    }
+
+    private static long writeStamp(@NonNull Context context) {
+        File stampFile = new File(context.getNoBackupFilesDir(), STAMP_FILE_NAME);
+        long stamp = Math.max(readStamp(context) + 1, System.currentTimeMillis());
+
+        try (RandomAccessFile file = new RandomAccessFile(stampFile, "rw")) {
+            file.writeLong(stamp);
+        } catch (IOException exception) {
+            Logger.e(TAG, "FCM defaults version could not be updated: " + exception.getMessage());
+        }
+        return stamp;
     }
 }
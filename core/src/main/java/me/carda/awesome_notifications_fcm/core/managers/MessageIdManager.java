@@ -0,0 +1,190 @@
+package me.carda.awesome_notifications_fcm.core.managers;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import me.carda.awesome_notifications.core.logs.Logger;
+import me.carda.awesome_notifications.core.utils.IntegerUtils;
+import me.carda.awesome_notifications.core.utils.StringUtils;
+import me.carda.awesome_notifications_fcm.core.utils.MessageRingFile;
+
+/// Translates FCM message ids into notification ids. The same message id
+/// always results in the same notification id, so redeliveries and updates
+/// target the same notification, and the relation is kept on disk to allow
+/// later remote instructions to address notifications by their FCM id.
+public class MessageIdManager {
+
+    public static String TAG = "MessageIdManager";
+
+    private static final String RING_FILE_NAME = "awesome_fcm_message_ids";
+
+    public static final int DEFAULT_MAX_MESSAGE_IDS = 500;
+    private static final int MAX_SEQUENCE_DIGITS = 8;
+
+    private final LinkedHashMap<String, Integer> notificationIdsByMessage = new LinkedHashMap<>();
+    private final HashMap<Integer, String> messageIdsByNotification = new HashMap<>();
+
+    private MessageRingFile ringFile;
+    private boolean isLoaded = false;
+    private int maxMessageIds = DEFAULT_MAX_MESSAGE_IDS;
+
+    // ************** SINGLETON PATTERN ***********************
+
+    private static MessageIdManager instance;
+
+    private MessageIdManager(){}
+    public static synchronized MessageIdManager getInstance() {
+        if (instance == null)
+            instance = new MessageIdManager();
+        return instance;
+    }
+
+    // ********************************************************
+
+    public synchronized void setMaxMessageIds(int maxMessageIds) {
+        this.maxMessageIds = Math.max(1, maxMessageIds);
+        if (isLoaded)
+            Logger.w(TAG, "The new message id table size will be applied on the next start");
+    }
+
+    /// Returns the notification id assigned to the message id, creating a new
+    /// stable one if this message id was never seen before.
+    public synchronized int getNotificationId(
+            @NonNull Context context,
+            @Nullable String messageId
+    ) {
+        if (StringUtils.getInstance().isNullOrEmpty(messageId))
+            return IntegerUtils.generateNextRandomId();
+
+        loadMessageIds(context);
+
+        Integer notificationId = notificationIdsByMessage.get(messageId);
+        if (notificationId != null)
+            return notificationId;
+
+        int candidateId = extractSequenceNumber(messageId);
+        if (candidateId < 0)
+            candidateId = hashMessageId(messageId);
+
+        // Linear probe until a notification id that is not taken by another message id
+        String owner;
+        while ((owner = messageIdsByNotification.get(candidateId)) != null && !owner.equals(messageId))
+            candidateId = (candidateId + 1) & Integer.MAX_VALUE;
+
+        registerMessageId(messageId, candidateId, System.currentTimeMillis(), true);
+        return candidateId;
+    }
+
+    /// Returns the notification id previously assigned to a FCM message id, or null if it is unknown
+    @Nullable
+    public synchronized Integer getNotificationIdByMessageId(
+            @NonNull Context context,
+            @Nullable String messageId
+    ) {
+        if (StringUtils.getInstance().isNullOrEmpty(messageId)) return null;
+        loadMessageIds(context);
+        return notificationIdsByMessage.get(messageId);
+    }
+
+    @Nullable
+    public synchronized String getMessageIdByNotificationId(
+            @NonNull Context context,
+            int notificationId
+    ) {
+        loadMessageIds(context);
+        return messageIdsByNotification.get(notificationId);
+    }
+
+    /// Extracts the digits between the last ':' and the following '%' of message
+    /// ids like "0:12345678%abcdef", without regex or allocations.
+    /// Returns -1 if there is no sequence with 1 to 8 digits on that position.
+    public static int extractSequenceNumber(@NonNull String messageId) {
+        for (int end = messageId.lastIndexOf('%'); end > 0; end = messageId.lastIndexOf('%', end - 1)) {
+            int start = end;
+            while (start > 0 && isDigit(messageId.charAt(start - 1)))
+                start--;
+
+            int digits = end - start;
+            if (digits == 0 || digits > MAX_SEQUENCE_DIGITS) continue;
+            if (start == 0 || messageId.charAt(start - 1) != ':') continue;
+
+            int value = 0;
+            for (int i = start; i < end; i++)
+                value = value * 10 + (messageId.charAt(i) - '0');
+            return value;
+        }
+        return -1;
+    }
+
+    /// FNV-1a hash over the full message id, restricted to positive values
+    static int hashMessageId(@NonNull String messageId) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < messageId.length(); i++) {
+            hash ^= messageId.charAt(i);
+            hash *= 0x01000193;
+        }
+        return hash & Integer.MAX_VALUE;
+    }
+
+    private static boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
+    }
+
+    private void registerMessageId(
+            @NonNull String messageId,
+            int notificationId,
+            long timestamp,
+            boolean persist
+    ) {
+        if (notificationIdsByMessage.size() >= maxMessageIds)
+            removeEldestMessageId();
+
+        Integer previousId = notificationIdsByMessage.put(messageId, notificationId);
+        if (previousId != null && previousId != notificationId)
+            messageIdsByNotification.remove(previousId);
+        messageIdsByNotification.put(notificationId, messageId);
+
+        if (!persist || ringFile == null) return;
+        try {
+            ringFile.append(timestamp, notificationId, messageId);
+        } catch (IOException exception) {
+            Logger.e(TAG, "Message id could not be persisted: " + exception.getMessage());
+        }
+    }
+
+    private void removeEldestMessageId() {
+        Iterator<Map.Entry<String, Integer>> iterator = notificationIdsByMessage.entrySet().iterator();
+        if (!iterator.hasNext()) return;
+
+        Map.Entry<String, Integer> eldest = iterator.next();
+        if (eldest.getKey().equals(messageIdsByNotification.get(eldest.getValue())))
+            messageIdsByNotification.remove(eldest.getValue());
+        iterator.remove();
+    }
+
+    private void loadMessageIds(@NonNull Context context) {
+        if (isLoaded) return;
+        isLoaded = true;
+
+        ringFile = new MessageRingFile(
+                new File(context.getNoBackupFilesDir(), RING_FILE_NAME));
+        try {
+            for (MessageRingFile.Entry entry : ringFile.open(maxMessageIds))
+                registerMessageId(entry.key, entry.value, entry.timestamp, false);
+
+        } catch (IOException exception) {
+            Logger.e(TAG, "Message ids file could not be opened: " + exception.getMessage());
+            ringFile.close();
+            ringFile = null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package me.carda.awesome_notifications_fcm.core.managers;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.carda.awesome_notifications.core.AwesomeNotifications;
+import me.carda.awesome_notifications.core.logs.Logger;
+import me.carda.awesome_notifications.core.utils.StringUtils;
+import me.carda.awesome_notifications_fcm.core.utils.MessageRingFile;
+
+/// Keeps the ids of the last received FCM messages, so redeliveries can be
+/// discarded even after the process was killed. Lookups are done in a hash
+/// index and every new id costs one slot write in a fixed size ring file.
+public class ReceivedMessageManager {
+
+    public static String TAG = "ReceivedMessageManager";
+
+    private static final String RING_FILE_NAME = "awesome_fcm_received_messages";
+
+    public static final int DEFAULT_MAX_MESSAGES = 200;
+    public static final long DEFAULT_MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final LinkedHashMap<String, Long> receivedMessages = new LinkedHashMap<>();
+
+    private MessageRingFile ringFile;
+    private boolean isLoaded = false;
+
+    private int maxMessages = DEFAULT_MAX_MESSAGES;
+    private long maxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+
+    // ************** SINGLETON PATTERN ***********************
+
+    private static ReceivedMessageManager instance;
+
+    private ReceivedMessageManager(){}
+    public static synchronized ReceivedMessageManager getInstance() {
+        if (instance == null)
+            instance = new ReceivedMessageManager();
+        return instance;
+    }
+
+    // ********************************************************
+
+    /// Sets how many message ids are remembered and for how long (0 means no age limit)
+    public synchronized void setDeduplicationWindow(int maxMessages, long maxAgeMillis) {
+        this.maxMessages = Math.max(1, maxMessages);
+        this.maxAgeMillis = Math.max(0, maxAgeMillis);
+
+        if (!isLoaded) return;
+
+        removeExpiredMessages(System.currentTimeMillis());
+        while (receivedMessages.size() > this.maxMessages)
+            removeEldestMessage();
+
+        if (ringFile != null)
+            try {
+                ringFile.rewrite(getEntries(), this.maxMessages);
+            } catch (IOException exception) {
+                Logger.e(TAG, "Received messages file could not be resized: " + exception.getMessage());
+            }
+    }
+
+    /// Returns true if the message id was already received inside the current
+    /// window, otherwise registers it as received and returns false.
+    public synchronized boolean isDuplicatedMessage(
+            @NonNull Context context,
+            @Nullable String messageId
+    ) {
+        if (StringUtils.getInstance().isNullOrEmpty(messageId)) return false;
+
+        loadReceivedMessages(context);
+
+        long now = System.currentTimeMillis();
+        removeExpiredMessages(now);
+
+        if (receivedMessages.containsKey(messageId)) {
+            Logger.d(TAG, "Received duplicated message: " + messageId);
+            return true;
+        }
+
+        if (receivedMessages.size() >= maxMessages)
+            removeEldestMessage();
+
+        receivedMessages.put(messageId, now);
+
+        if (ringFile != null)
+            try {
+                ringFile.append(now, 0, messageId);
+            } catch (IOException exception) {
+                Logger.e(TAG, "Received message could not be persisted: " + exception.getMessage());
+            }
+
+        return false;
+    }
+
+    private void loadReceivedMessages(@NonNull Context context) {
+        if (isLoaded) return;
+        isLoaded = true;
+
+        ringFile = new MessageRingFile(
+                new File(context.getNoBackupFilesDir(), RING_FILE_NAME));
+        try {
+            for (MessageRingFile.Entry entry : ringFile.open(maxMessages))
+                receivedMessages.put(entry.key, entry.timestamp);
+
+            if (AwesomeNotifications.debug)
+                Logger.d(TAG, receivedMessages.size() + " received message ids restored");
+
+        } catch (IOException exception) {
+            Logger.e(TAG, "Received messages file could not be opened: " + exception.getMessage());
+            ringFile.close();
+            ringFile = null;
+        }
+    }
+
+    /// Entries are kept in arrival order, so only the eldest ones need to be checked
+    private void removeExpiredMessages(long now) {
+        if (maxAgeMillis == 0) return;
+
+        Iterator<Map.Entry<String, Long>> iterator = receivedMessages.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().getValue() <= maxAgeMillis) break;
+            iterator.remove();
+        }
+    }
+
+    private void removeEldestMessage() {
+        Iterator<String> iterator = receivedMessages.keySet().iterator();
+        if (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    @NonNull
+    private List<MessageRingFile.Entry> getEntries() {
+        List<MessageRingFile.Entry> entries = new ArrayList<>(receivedMessages.size());
+        for (Map.Entry<String, Long> entry : receivedMessages.entrySet())
+            entries.add(new MessageRingFile.Entry(entry.getValue(), 0, entry.getKey()));
+        return entries;
+    }
+}
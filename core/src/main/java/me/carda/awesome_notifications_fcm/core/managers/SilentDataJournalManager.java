@@ -0,0 +1,146 @@
+package me.carda.awesome_notifications_fcm.core.managers;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import me.carda.awesome_notifications.core.AwesomeNotifications;
+import me.carda.awesome_notifications.core.logs.Logger;
+import me.carda.awesome_notifications_fcm.core.metrics.FcmMetricsManager;
+import me.carda.awesome_notifications_fcm.core.utils.SilentDataJournalFile;
+
+/// Keeps the silent data on disk from the moment it is enqueued until the
+/// background executor has processed it. Silent data left unacknowledged by a
+/// previous process, because there was no Dart handle or the executor failed,
+/// is recovered once per process to be delivered again.
+public class SilentDataJournalManager {
+
+    public static String TAG = "SilentDataJournalManager";
+
+    public static final String COUNTER_JOURNALED_SILENT_DATA = "journaledSilentData";
+    public static final String COUNTER_RECOVERED_SILENT_DATA = "recoveredSilentData";
+    public static final String COUNTER_DISCARDED_SILENT_DATA = "discardedSilentData";
+
+    private static final String JOURNAL_FILE_NAME = "awesome_fcm_silent_journal";
+
+    public static final int DEFAULT_MAX_PENDING_ENTRIES = 500;
+
+    private SilentDataJournalFile journalFile;
+    private List<SilentDataJournalFile.Entry> recoveredEntries = Collections.emptyList();
+    private boolean isLoaded = false;
+    private int maxPendingEntries = DEFAULT_MAX_PENDING_ENTRIES;
+
+    // ************** SINGLETON PATTERN ***********************
+
+    private static SilentDataJournalManager instance;
+
+    private SilentDataJournalManager(){}
+    public static synchronized SilentDataJournalManager getInstance() {
+        if (instance == null)
+            instance = new SilentDataJournalManager();
+        return instance;
+    }
+
+    // ********************************************************
+
+    public synchronized void setMaxPendingEntries(int maxPendingEntries) {
+        this.maxPendingEntries = Math.max(1, maxPendingEntries);
+    }
+
+    /// Persists the silent data and returns its journal sequences, or null if
+    /// the journal is not available and the silent data will not be durable
+    @Nullable
+    public long[] append(@NonNull Context context, @NonNull byte[][] payloads) {
+        SilentDataJournalFile journal = getJournalFile(context);
+        if (journal == null) return null;
+
+        try {
+            long[] sequences = journal.append(payloads);
+            FcmMetricsManager
+                    .getInstance()
+                    .addToCounter(COUNTER_JOURNALED_SILENT_DATA, sequences.length);
+
+            discardExceedingEntries(journal);
+            return sequences;
+
+        } catch (IOException exception) {
+            Logger.e(TAG, "Silent data could not be journaled: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    public void acknowledge(@NonNull Context context, @Nullable long[] sequences) {
+        if (sequences == null || sequences.length == 0) return;
+
+        SilentDataJournalFile journal = getJournalFile(context);
+        if (journal == null) return;
+
+        try {
+            journal.acknowledge(sequences);
+        } catch (IOException exception) {
+            Logger.e(TAG, "Silent data could not be acknowledged: " + exception.getMessage());
+        }
+    }
+
+    /// Returns the silent data left by the previous process, only on the first call
+    @NonNull
+    public synchronized List<SilentDataJournalFile.Entry> takeRecoveredEntries(@NonNull Context context) {
+        getJournalFile(context);
+
+        List<SilentDataJournalFile.Entry> entries = recoveredEntries;
+        recoveredEntries = Collections.emptyList();
+        return entries;
+    }
+
+    private void discardExceedingEntries(@NonNull SilentDataJournalFile journal) throws IOException {
+        int maxPending;
+        synchronized (this) {
+            maxPending = maxPendingEntries;
+        }
+        if (journal.getPendingCount() <= maxPending) return;
+
+        int discarded = journal.trimTo(maxPending).size();
+        FcmMetricsManager
+                .getInstance()
+                .addToCounter(COUNTER_DISCARDED_SILENT_DATA, discarded);
+        Logger.w(TAG, discarded + " unprocessed silent data were discarded from the journal");
+    }
+
+    @Nullable
+    private synchronized SilentDataJournalFile getJournalFile(@NonNull Context context) {
+        if (isLoaded) return journalFile;
+        isLoaded = true;
+
+        journalFile = new SilentDataJournalFile(
+                new File(context.getNoBackupFilesDir(), JOURNAL_FILE_NAME));
+        try {
+            recoveredEntries = journalFile.open();
+            if (recoveredEntries.size() > maxPendingEntries) {
+                journalFile.trimTo(maxPendingEntries);
+                recoveredEntries = new ArrayList<>(recoveredEntries.subList(
+                        recoveredEntries.size() - maxPendingEntries, recoveredEntries.size()));
+            }
+            if (!recoveredEntries.isEmpty()) {
+                FcmMetricsManager
+                        .getInstance()
+                        .addToCounter(COUNTER_RECOVERED_SILENT_DATA, recoveredEntries.size());
+
+                if (AwesomeNotifications.debug)
+                    Logger.d(TAG, recoveredEntries.size() + " silent data recovered from the journal");
+            }
+
+        } catch (IOException exception) {
+            Logger.e(TAG, "Silent data journal could not be opened: " + exception.getMessage());
+            journalFile.close();
+            journalFile = null;
+        }
+        return journalFile;
+    }
+}
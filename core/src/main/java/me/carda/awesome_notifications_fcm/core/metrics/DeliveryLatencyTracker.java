@@ -0,0 +1,124 @@
+package me.carda.awesome_notifications_fcm.core.metrics;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/// Tracks how long the displayed pushes took from the FCM server send time
+/// (google.sent_time) and from the on device reception until they were
+/// displayed, split by notification channel and by FCM priority.
+public final class DeliveryLatencyTracker {
+
+    public static final String TAG = "DeliveryLatencyTracker";
+
+    public static final String SEND_TO_DISPLAY = "sendToDisplay";
+    public static final String RECEIVE_TO_DISPLAY = "receiveToDisplay";
+    public static final String BY_CHANNEL = "byChannel";
+    public static final String BY_PRIORITY = "byPriority";
+    public static final String COUNTER_TTL_EXCEEDED = "displayedAfterTtl";
+
+    private static final String UNKNOWN = "unknown";
+
+    private final ConcurrentHashMap<String, RollingLatencyHistogram> sendToDisplayByChannel = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RollingLatencyHistogram> sendToDisplayByPriority = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RollingLatencyHistogram> receiveToDisplayByChannel = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RollingLatencyHistogram> receiveToDisplayByPriority = new ConcurrentHashMap<>();
+
+    // ************** SINGLETON PATTERN ***********************
+
+    private static DeliveryLatencyTracker instance;
+
+    private DeliveryLatencyTracker(){}
+    public static synchronized DeliveryLatencyTracker getInstance() {
+        if (instance == null)
+            instance = new DeliveryLatencyTracker();
+        return instance;
+    }
+
+    // ********************************************************
+
+    /// Registers a displayed push. Times are in epoch milliseconds and a
+    /// sentTime or receivedTime lower or equal to zero means it is unknown.
+    public void recordDisplay(
+            @Nullable String channelKey,
+            @Nullable String priority,
+            long sentTime,
+            long receivedTime,
+            long ttlSeconds,
+            long displayedTime
+    ) {
+        String channel = channelKey == null ? UNKNOWN : channelKey;
+        String fcmPriority = priority == null ? UNKNOWN : priority;
+
+        if (sentTime > 0) {
+            long sendToDisplay = displayedTime - sentTime;
+            getHistogram(sendToDisplayByChannel, channel).recordMillis(sendToDisplay);
+            getHistogram(sendToDisplayByPriority, fcmPriority).recordMillis(sendToDisplay);
+
+            if (ttlSeconds > 0 && sendToDisplay > ttlSeconds * 1000)
+                FcmMetricsManager
+                        .getInstance()
+                        .incrementCounter(COUNTER_TTL_EXCEEDED);
+        }
+
+        if (receivedTime > 0) {
+            long receiveToDisplay = displayedTime - receivedTime;
+            getHistogram(receiveToDisplayByChannel, channel).recordMillis(receiveToDisplay);
+            getHistogram(receiveToDisplayByPriority, fcmPriority).recordMillis(receiveToDisplay);
+        }
+    }
+
+    public void reset() {
+        sendToDisplayByChannel.clear();
+        sendToDisplayByPriority.clear();
+        receiveToDisplayByChannel.clear();
+        receiveToDisplayByPriority.clear();
+    }
+
+    /// Returns the p50, p95 and p99 snapshots of the rolling histograms
+    @NonNull
+    public Map<String, Object> toMap() {
+        Map<String, Object> sendToDisplay = new HashMap<>();
+        sendToDisplay.put(BY_CHANNEL, getSnapshots(sendToDisplayByChannel));
+        sendToDisplay.put(BY_PRIORITY, getSnapshots(sendToDisplayByPriority));
+
+        Map<String, Object> receiveToDisplay = new HashMap<>();
+        receiveToDisplay.put(BY_CHANNEL, getSnapshots(receiveToDisplayByChannel));
+        receiveToDisplay.put(BY_PRIORITY, getSnapshots(receiveToDisplayByPriority));
+
+        Map<String, Object> dataMap = new HashMap<>();
+        dataMap.put(SEND_TO_DISPLAY, sendToDisplay);
+        dataMap.put(RECEIVE_TO_DISPLAY, receiveToDisplay);
+        return dataMap;
+    }
+
+    @NonNull
+    private static Map<String, Object> getSnapshots(
+            @NonNull Map<String, RollingLatencyHistogram> histograms
+    ) {
+        Map<String, Object> snapshots = new HashMap<>();
+        for (Map.Entry<String, RollingLatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram snapshot = entry.getValue().getSnapshot();
+            if (snapshot.getCount() > 0)
+                snapshots.put(entry.getKey(), snapshot.toMap());
+        }
+        return snapshots;
+    }
+
+    @NonNull
+    private static RollingLatencyHistogram getHistogram(
+            @NonNull ConcurrentHashMap<String, RollingLatencyHistogram> histograms,
+            @NonNull String key
+    ) {
+        RollingLatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            RollingLatencyHistogram newHistogram = new RollingLatencyHistogram();
+            histogram = histograms.putIfAbsent(key, newHistogram);
+            if (histogram == null) histogram = newHistogram;
+        }
+        return histogram;
+    }
+}
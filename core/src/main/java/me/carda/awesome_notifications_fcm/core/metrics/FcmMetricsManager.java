@@ -0,0 +1,119 @@
+package me.carda.awesome_notifications_fcm.core.metrics;
+
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// Collects the time spent on each stage of the push delivery pipeline and a
+/// few event counters. Stages can optionally be exported as android.os.Trace
+/// sections, to be inspected with systrace or Perfetto.
+public final class FcmMetricsManager {
+
+    public static final String TAG = "FcmMetricsManager";
+
+    public static final String COUNTER_PUSHES_RECEIVED = "pushesReceived";
+    public static final String COUNTER_DUPLICATED_PUSHES = "duplicatedPushes";
+    public static final String COUNTER_NOTIFICATIONS = "notifications";
+    public static final String COUNTER_SILENT_DATA = "silentData";
+
+    private final LatencyHistogram[] stageHistograms;
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    private volatile boolean isTraceEnabled = false;
+
+    // ************** SINGLETON PATTERN ***********************
+
+    private static FcmMetricsManager instance;
+
+    private FcmMetricsManager(){
+        PipelineStage[] stages = PipelineStage.values();
+        stageHistograms = new LatencyHistogram[stages.length];
+        for (int index = 0; index < stages.length; index++)
+            stageHistograms[index] = new LatencyHistogram();
+    }
+
+    public static synchronized FcmMetricsManager getInstance() {
+        if (instance == null)
+            instance = new FcmMetricsManager();
+        return instance;
+    }
+
+    // ********************************************************
+
+    public void setTraceEnabled(boolean traceEnabled) {
+        isTraceEnabled = traceEnabled;
+    }
+
+    /// Starts a pipeline stage and returns its start time, which must be
+    /// informed back into endStage on the same thread
+    public long beginStage(@NonNull PipelineStage stage) {
+        if (isTraceEnabled)
+            Trace.beginSection(stage.traceName);
+        return System.nanoTime();
+    }
+
+    public void endStage(@NonNull PipelineStage stage, long startTime) {
+        stageHistograms[stage.ordinal()].recordNanos(System.nanoTime() - startTime);
+        if (isTraceEnabled)
+            Trace.endSection();
+    }
+
+    /// Records a stage duration that was measured elsewhere, without trace sections
+    public void recordStage(@NonNull PipelineStage stage, long durationNanos) {
+        stageHistograms[stage.ordinal()].recordNanos(durationNanos);
+    }
+
+    @NonNull
+    public LatencyHistogram getStageHistogram(@NonNull PipelineStage stage) {
+        return stageHistograms[stage.ordinal()];
+    }
+
+    public void incrementCounter(@NonNull String counterName) {
+        addToCounter(counterName, 1);
+    }
+
+    public void addToCounter(@NonNull String counterName, long value) {
+        AtomicLong counter = counters.get(counterName);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = counters.putIfAbsent(counterName, newCounter);
+            if (counter == null) counter = newCounter;
+        }
+        counter.addAndGet(value);
+    }
+
+    public long getCounter(@NonNull String counterName) {
+        AtomicLong counter = counters.get(counterName);
+        return counter == null ? 0 : counter.get();
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : stageHistograms)
+            histogram.reset();
+        counters.clear();
+    }
+
+    @NonNull
+    public Map<String, Object> toMap() {
+        Map<String, Object> stages = new HashMap<>();
+        for (PipelineStage stage : PipelineStage.values()) {
+            LatencyHistogram histogram = stageHistograms[stage.ordinal()];
+            if (histogram.getCount() > 0)
+                stages.put(stage.name(), histogram.toMap());
+        }
+
+        Map<String, Object> counterValues = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> counter : counters.entrySet())
+            counterValues.put(counter.getKey(), counter.getValue().get());
+
+        Map<String, Object> dataMap = new HashMap<>();
+        dataMap.put("stages", stages);
+        dataMap.put("counters", counterValues);
+        return dataMap;
+    }
+}
@@ -0,0 +1,118 @@
+package me.carda.awesome_notifications_fcm.core.metrics;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/// Lock free latency histogram with a fixed amount of memory. Values are kept
+/// in microseconds inside power of two buckets, so each record costs only a few
+/// atomic increments and percentiles are precise up to the bucket boundaries.
+public final class LatencyHistogram {
+
+    public static final int BUCKET_COUNT = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMillis(long millis) {
+        recordMicros(millis * 1000);
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0) micros = 0;
+
+        buckets.incrementAndGet(getBucketIndex(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+
+        long currentMax;
+        while (micros > (currentMax = maxMicros.get()))
+            if (maxMicros.compareAndSet(currentMax, micros)) break;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public long getAverageMicros() {
+        long currentCount = count.get();
+        return currentCount == 0 ? 0 : totalMicros.get() / currentCount;
+    }
+
+    /// Returns the upper bound, in microseconds, of the bucket holding the percentile (0 to 100)
+    public long getPercentileMicros(double percentile) {
+        long currentCount = count.get();
+        if (currentCount == 0) return 0;
+
+        long target = (long) Math.ceil(currentCount * Math.min(100, Math.max(0, percentile)) / 100.0);
+        if (target == 0) target = 1;
+
+        long accumulated = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            accumulated += buckets.get(index);
+            if (accumulated >= target)
+                return Math.min(getBucketUpperBound(index), maxMicros.get());
+        }
+        return maxMicros.get();
+    }
+
+    /// Adds all the values of another histogram into this one
+    public void merge(@NonNull LatencyHistogram other) {
+        long otherCount = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            long bucketCount = other.buckets.get(index);
+            if (bucketCount == 0) continue;
+            buckets.addAndGet(index, bucketCount);
+            otherCount += bucketCount;
+        }
+        count.addAndGet(otherCount);
+        totalMicros.addAndGet(other.totalMicros.get());
+
+        long otherMax = other.maxMicros.get();
+        long currentMax;
+        while (otherMax > (currentMax = maxMicros.get()))
+            if (maxMicros.compareAndSet(currentMax, otherMax)) break;
+    }
+
+    public void reset() {
+        for (int index = 0; index < BUCKET_COUNT; index++)
+            buckets.set(index, 0);
+        count.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    @NonNull
+    public Map<String, Object> toMap() {
+        Map<String, Object> dataMap = new HashMap<>();
+        dataMap.put("count", getCount());
+        dataMap.put("averageMicros", getAverageMicros());
+        dataMap.put("maxMicros", getMaxMicros());
+        dataMap.put("p50Micros", getPercentileMicros(50));
+        dataMap.put("p95Micros", getPercentileMicros(95));
+        dataMap.put("p99Micros", getPercentileMicros(99));
+        return dataMap;
+    }
+
+    private static int getBucketIndex(long micros) {
+        int index = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    private static long getBucketUpperBound(int index) {
+        return index == 0 ? 0 : (1L << index) - 1;
+    }
+}
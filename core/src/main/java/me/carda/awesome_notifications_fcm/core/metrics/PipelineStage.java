@@ -0,0 +1,22 @@
+package me.carda.awesome_notifications_fcm.core.metrics;
+
+public enum PipelineStage {
+    ColdInitialization,
+    WarmInitialization,
+    PushProcessing,
+    RpcScan,
+    MessageParsing,
+    NotificationBuild,
+    Validation,
+    LicenseCheck,
+    LicenseVerification,
+    Send,
+    Schedule,
+    SilentListenerDelivery,
+    SilentJobDelivery,
+    ExecutorColdStart,
+    ExecutorWarmDispatch,
+    PushTotal;
+
+    final String traceName = "AwnFcm." + name();
+}
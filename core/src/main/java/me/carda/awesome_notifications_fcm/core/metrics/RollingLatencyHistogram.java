@@ -0,0 +1,64 @@
+package me.carda.awesome_notifications_fcm.core.metrics;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/// Latency histogram that only keeps the values recorded during the last
+/// windowCount * windowMillis. Each window is a fixed size LatencyHistogram,
+/// recycled when its time slot comes around again.
+public final class RollingLatencyHistogram {
+
+    public static final int DEFAULT_WINDOW_COUNT = 6;
+    public static final long DEFAULT_WINDOW_MILLIS = 10 * 60 * 1000L;
+
+    private final LatencyHistogram[] windows;
+    private final AtomicLongArray windowEpochs;
+    private final long windowMillis;
+
+    public RollingLatencyHistogram() {
+        this(DEFAULT_WINDOW_COUNT, DEFAULT_WINDOW_MILLIS);
+    }
+
+    public RollingLatencyHistogram(int windowCount, long windowMillis) {
+        this.windowMillis = Math.max(1, windowMillis);
+        this.windows = new LatencyHistogram[Math.max(1, windowCount)];
+        this.windowEpochs = new AtomicLongArray(windows.length);
+        for (int index = 0; index < windows.length; index++) {
+            windows[index] = new LatencyHistogram();
+            windowEpochs.set(index, -1);
+        }
+    }
+
+    public void recordMillis(long millis) {
+        getCurrentWindow(System.currentTimeMillis()).recordMillis(millis);
+    }
+
+    /// Merges all the windows that are still inside the rolling period
+    @NonNull
+    public LatencyHistogram getSnapshot() {
+        long currentEpoch = System.currentTimeMillis() / windowMillis;
+        LatencyHistogram snapshot = new LatencyHistogram();
+        for (int index = 0; index < windows.length; index++)
+            if (currentEpoch - windowEpochs.get(index) < windows.length)
+                snapshot.merge(windows[index]);
+        return snapshot;
+    }
+
+    @NonNull
+    private LatencyHistogram getCurrentWindow(long now) {
+        long epoch = now / windowMillis;
+        int index = (int) (epoch % windows.length);
+
+        long windowEpoch = windowEpochs.get(index);
+        if (windowEpoch != epoch)
+            synchronized (windows[index]) {
+                if (windowEpochs.get(index) != epoch) {
+                    windows[index].reset();
+                    windowEpochs.set(index, epoch);
+                }
+            }
+
+        return windows[index];
+    }
+}
@@ -5,17 +5,32 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import me.carda.awesome_notifications.core.Definitions;
 import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
+import me.carda.awesome_notifications.core.logs.Logger;
 import me.carda.awesome_notifications.core.models.AbstractModel;
 import me.carda.awesome_notifications_fcm.core.FcmDefinitions;
+import me.carda.awesome_notifications_fcm.core.utils.FcmBinaryCodec;
 
 public class FcmDefaultsModel extends AbstractModel {
 
+    public static final String TAG = "FcmDefaultsModel";
+
+    private static final byte BINARY_VERSION = 1;
+
+    private static final int FIELD_SILENT_DATA_CALLBACK = 1;
+    private static final int FIELD_REVERSE_DART_CALLBACK = 2;
+    private static final int FIELD_LICENSE_KEYS = 3;
+    private static final int FIELD_BACKGROUND_HANDLE_CLASS = 4;
+    // Written even for empty lists, so an empty list is not read back as null
+    private static final int FIELD_LICENSE_KEYS_COUNT = 5;
+
     public String silentDataCallback = "0";
     public String reverseDartCallback = "0";
     public List<String> licenseKeys;
@@ -64,6 +79,66 @@ public class FcmDefaultsModel extends AbstractModel {
         return (FcmDefaultsModel) super.templateFromJson(json);
     }
 
+    @NonNull
+    public byte[] toBytes() {
+        FcmBinaryCodec.Writer writer = new FcmBinaryCodec.Writer(128);
+        writer.writeHeader(FcmBinaryCodec.TYPE_FCM_DEFAULTS, BINARY_VERSION);
+        writer.writeString(FIELD_SILENT_DATA_CALLBACK, silentDataCallback);
+        writer.writeString(FIELD_REVERSE_DART_CALLBACK, reverseDartCallback);
+        if (licenseKeys != null)
+            writer.writeLong(FIELD_LICENSE_KEYS_COUNT, licenseKeys.size());
+        writer.writeStringList(FIELD_LICENSE_KEYS, licenseKeys);
+        writer.writeString(FIELD_BACKGROUND_HANDLE_CLASS, backgroundHandleClass);
+        return writer.toByteArray();
+    }
+
+    /// Reads the defaults written by toBytes, returning null if they are invalid
+    @Nullable
+    public FcmDefaultsModel fromBytes(@Nullable byte[] bytes) {
+        if (!FcmBinaryCodec.isBinary(bytes)) return null;
+
+        silentDataCallback = "0";
+        reverseDartCallback = "0";
+        licenseKeys = null;
+        backgroundHandleClass = null;
+        try {
+            FcmBinaryCodec.Reader reader = new FcmBinaryCodec.Reader(bytes);
+            reader.readHeader(FcmBinaryCodec.TYPE_FCM_DEFAULTS);
+
+            while (reader.nextField()) {
+                switch (reader.getTag()) {
+                    case FIELD_SILENT_DATA_CALLBACK:
+                        silentDataCallback = reader.readString();
+                        break;
+                    case FIELD_REVERSE_DART_CALLBACK:
+                        reverseDartCallback = reader.readString();
+                        break;
+                    case FIELD_LICENSE_KEYS:
+                        if (licenseKeys == null)
+                            licenseKeys = new ArrayList<>();
+                        licenseKeys.add(reader.readString());
+                        break;
+                    case FIELD_BACKGROUND_HANDLE_CLASS:
+                        backgroundHandleClass = reader.readString();
+                        break;
+                    case FIELD_LICENSE_KEYS_COUNT:
+                        reader.readLong();
+                        if (licenseKeys == null)
+                            licenseKeys = new ArrayList<>();
+                        break;
+                    default:
+                        // Written by a newer version
+                        reader.skipField();
+                }
+            }
+            return this;
+
+        } catch (IOException exception) {
+            Logger.e(TAG, "Invalid binary FCM defaults: " + exception.getMessage());
+            return null;
+        }
+    }
+
     @Override
     public void validate(Context context) throws AwesomeNotificationsException {
 
@@ -3,10 +3,14 @@ package me.carda.awesome_notifications_fcm.core.models;
 import android.content.Context;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TimeZone;
 
 import me.carda.awesome_notifications.core.Definitions;
 import me.carda.awesome_notifications.core.enumerators.NotificationLifeCycle;
@@ -14,14 +18,25 @@ import me.carda.awesome_notifications.core.enumerators.NotificationSource;
 import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
 import me.carda.awesome_notifications.core.exceptions.ExceptionCode;
 import me.carda.awesome_notifications.core.exceptions.ExceptionFactory;
+import me.carda.awesome_notifications.core.logs.Logger;
 import me.carda.awesome_notifications.core.models.AbstractModel;
 import me.carda.awesome_notifications.core.models.NotificationModel;
 import me.carda.awesome_notifications.core.utils.CalendarUtils;
+import me.carda.awesome_notifications_fcm.core.utils.FcmBinaryCodec;
 
 public class SilentDataModel extends AbstractModel {
 
     public static final String TAG = "SilentDataModel";
 
+    private static final byte BINARY_VERSION = 1;
+
+    private static final int FIELD_ID = 1;
+    private static final int FIELD_CREATED_DATE = 2;
+    private static final int FIELD_CREATED_TIME_ZONE = 3;
+    private static final int FIELD_CREATED_SOURCE = 4;
+    private static final int FIELD_CREATED_LIFECYCLE = 5;
+    private static final int FIELD_DATA = 6;
+
     public Integer id;
     public Calendar createdDate;
     public NotificationSource createdSource;
@@ -103,6 +118,92 @@ public class SilentDataModel extends AbstractModel {
         return (SilentDataModel) super.templateFromJson(json);
     }
 
+    /// Compact binary alternative to toJson, used to move the silent data
+    /// between the queue, the journal and the silent service
+    @NonNull
+    public byte[] toBytes() {
+        FcmBinaryCodec.Writer writer = new FcmBinaryCodec.Writer(64 + data.size() * 32);
+        writer.writeHeader(FcmBinaryCodec.TYPE_SILENT_DATA, BINARY_VERSION);
+
+        if (id != null)
+            writer.writeLong(FIELD_ID, id);
+        if (createdDate != null) {
+            writer.writeLong(FIELD_CREATED_DATE, createdDate.getTimeInMillis());
+            writer.writeString(FIELD_CREATED_TIME_ZONE, createdDate.getTimeZone().getID());
+        }
+        if (createdSource != null)
+            writer.writeString(FIELD_CREATED_SOURCE, createdSource.name());
+        if (createdLifeCycle != null)
+            writer.writeString(FIELD_CREATED_LIFECYCLE, createdLifeCycle.name());
+        writer.writeStringMap(FIELD_DATA, data);
+
+        return writer.toByteArray();
+    }
+
+    /// Reads the silent data written by toBytes. Content written as json by
+    /// previous versions is also accepted. Returns null if it is invalid.
+    @Nullable
+    public SilentDataModel fromBytes(@Nullable byte[] bytes) {
+        if (bytes == null || bytes.length == 0) return null;
+        if (!FcmBinaryCodec.isBinary(bytes))
+            return fromJson(new String(bytes, StandardCharsets.UTF_8));
+
+        data.clear();
+        try {
+            FcmBinaryCodec.Reader reader = new FcmBinaryCodec.Reader(bytes);
+            reader.readHeader(FcmBinaryCodec.TYPE_SILENT_DATA);
+
+            Long createdMillis = null;
+            String timeZoneId = null;
+            while (reader.nextField()) {
+                switch (reader.getTag()) {
+                    case FIELD_ID:
+                        id = (int) reader.readLong();
+                        break;
+                    case FIELD_CREATED_DATE:
+                        createdMillis = reader.readLong();
+                        break;
+                    case FIELD_CREATED_TIME_ZONE:
+                        timeZoneId = reader.readString();
+                        break;
+                    case FIELD_CREATED_SOURCE:
+                        createdSource = getEnumValue(NotificationSource.class, reader.readString());
+                        break;
+                    case FIELD_CREATED_LIFECYCLE:
+                        createdLifeCycle = getEnumValue(NotificationLifeCycle.class, reader.readString());
+                        break;
+                    case FIELD_DATA:
+                        reader.readStringMapEntry(data);
+                        break;
+                    default:
+                        // Written by a newer version
+                        reader.skipField();
+                }
+            }
+
+            if (createdMillis != null) {
+                createdDate = Calendar.getInstance(timeZoneId == null
+                        ? TimeZone.getTimeZone("UTC")
+                        : TimeZone.getTimeZone(timeZoneId));
+                createdDate.setTimeInMillis(createdMillis);
+            }
+            return this;
+
+        } catch (IOException exception) {
+            Logger.e(TAG, "Invalid binary silent data: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    @Nullable
+    private static <T extends Enum<T>> T getEnumValue(@NonNull Class<T> enumClass, @NonNull String name) {
+        try {
+            return Enum.valueOf(enumClass, name);
+        } catch (IllegalArgumentException exception) {
+            return null;
+        }
+    }
+
     @Override
     public void validate(Context context) throws AwesomeNotificationsException {
         if(data == null ||  data.isEmpty())
@@ -3,7 +3,6 @@ package me.carda.awesome_notifications_fcm.core.services;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
-import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
 
@@ -11,44 +10,86 @@ import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.MessagingAnalytics;
 import com.google.firebase.messaging.RemoteMessage;
 
-import java.util.ArrayDeque;
-import java.util.Objects;
-import java.util.Queue;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import me.carda.awesome_notifications.core.AwesomeNotifications;
 import me.carda.awesome_notifications.core.exceptions.AwesomeNotificationsException;
 import me.carda.awesome_notifications.core.exceptions.ExceptionCode;
 import me.carda.awesome_notifications.core.exceptions.ExceptionFactory;
 import me.carda.awesome_notifications.core.logs.Logger;
-import me.carda.awesome_notifications.core.utils.IntegerUtils;
 import me.carda.awesome_notifications.core.utils.StringUtils;
 import me.carda.awesome_notifications_fcm.core.AwesomeNotificationsFcm;
 import me.carda.awesome_notifications_fcm.core.broadcasters.broadcasters.FcmBroadcaster;
 import me.carda.awesome_notifications_fcm.core.interpreters.FcmInterpreter;
+import me.carda.awesome_notifications_fcm.core.interpreters.NotificationCoalescer;
+import me.carda.awesome_notifications_fcm.core.managers.ReceivedMessageManager;
+import me.carda.awesome_notifications_fcm.core.metrics.FcmMetricsManager;
+import me.carda.awesome_notifications_fcm.core.metrics.PipelineStage;
 import me.carda.awesome_notifications_fcm.core.mocking_google.SendException;
+import me.carda.awesome_notifications_fcm.core.threads.FcmDelayedExecutor;
+import me.carda.awesome_notifications_fcm.core.threads.NotificationUpdateThrottler;
+import me.carda.awesome_notifications_fcm.core.threads.SilentDataQueue;
 
 
 public abstract class AwesomeFcmService extends FirebaseMessagingService {
     private static final String TAG = "AwesomeFcmService";
-    private static final Queue<String> recentlyReceivedMessageIds = new ArrayDeque(10);
+
+    private static final Object initializationLock = new Object();
+    private static volatile boolean isInitialized = false;
+    private static volatile long coldInitializationNanos = -1;
+    private static volatile long lastWarmInitializationNanos = -1;
+
+    private volatile boolean requiresRemoteMessage = true;
 
     public abstract void initializeExternalPlugins(Context context) throws Exception;
 
     @Override
     public void onCreate() {
         super.onCreate();
+        requiresRemoteMessage = isOnMessageReceivedOverridden();
+    }
+
+    /// RemoteMessage instances are only required to deliver them into subclasses
+    /// of this service, so pushes that do not need one for their display skip it
+    private boolean isOnMessageReceivedOverridden() {
+        try {
+            return getClass()
+                    .getMethod("onMessageReceived", RemoteMessage.class)
+                    .getDeclaringClass() != FirebaseMessagingService.class;
+        } catch (NoSuchMethodException exception) {
+            return true;
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        // Held deliveries and updates are sent before the service is gone, as
+        // the process may be frozen or killed right after it. Coalesced
+        // deliveries go first, as they can still be held by the throttler.
+        NotificationCoalescer
+                .getInstance()
+                .flushAll();
+        NotificationUpdateThrottler
+                .getInstance()
+                .flushAll();
+
+        FcmDelayedExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                SilentDataQueue
+                        .getInstance()
+                        .flush();
+            }
+        }, 0);
+        super.onDestroy();
     }
 
     @Override
     public void handleIntent(Intent intent){
         Logger.d(TAG, "A new Awesome FCM service has started");
+        long receivedTime = System.currentTimeMillis();
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+        long startTime = metricsManager.beginStage(PipelineStage.PushTotal);
         try {
-            initializeExternalPlugins(this);
-            AwesomeNotifications.initialize(this);
-            AwesomeNotificationsFcm.initialize(this);
-
+            initializeOnce();
 
             String action = intent.getAction();
             if (
@@ -67,7 +108,7 @@ public abstract class AwesomeFcmService extends FirebaseMessagingService {
                     Logger.d("FirebaseMessaging", errorMsg);
                 }
             } else {
-                this.handleMessageIntent(intent);
+                this.handleMessageIntent(intent, receivedTime);
             }
 
         } catch (AwesomeNotificationsException ignored) {
@@ -80,7 +121,56 @@ public abstract class AwesomeFcmService extends FirebaseMessagingService {
                             "A new Awesome FCM service could not be executed",
                             ExceptionCode.DETAILED_INVALID_ARGUMENTS,
                             e);
+        } finally {
+            metricsManager.endStage(PipelineStage.PushTotal, startTime);
+        }
+    }
+
+    /// Runs the plugin initialization only once per process. Later intents only
+    /// pay for a volatile read, and concurrent service instances wait for the
+    /// first one instead of loading the extensions twice.
+    private void initializeOnce() throws Exception {
+        long startTime = System.nanoTime();
+
+        if (!isInitialized) {
+            synchronized (initializationLock) {
+                if (!isInitialized) {
+                    initializeExternalPlugins(this);
+                    AwesomeNotifications.initialize(this);
+                    AwesomeNotificationsFcm.initialize(this);
+
+                    isInitialized = true;
+                    coldInitializationNanos = System.nanoTime() - startTime;
+                    FcmMetricsManager
+                            .getInstance()
+                            .recordStage(PipelineStage.ColdInitialization, coldInitializationNanos);
+
+                    if (AwesomeNotifications.debug)
+                        Logger.d(TAG, "Awesome FCM service initialized in "
+                                + (coldInitializationNanos / 1000) + "us (cold)");
+                    return;
+                }
+            }
         }
+
+        lastWarmInitializationNanos = System.nanoTime() - startTime;
+        FcmMetricsManager
+                .getInstance()
+                .recordStage(PipelineStage.WarmInitialization, lastWarmInitializationNanos);
+    }
+
+    public static boolean isServiceInitialized() {
+        return isInitialized;
+    }
+
+    /// Time spent on the first (cold) initialization, or -1 if it has not happened yet
+    public static long getColdInitializationNanos() {
+        return coldInitializationNanos;
+    }
+
+    /// Time spent by the last intent to pass through the already warm initialization
+    public static long getLastWarmInitializationNanos() {
+        return lastWarmInitializationNanos;
     }
 
     /// Called when a new token for the default Firebase project is generated.
@@ -112,49 +202,44 @@ public abstract class AwesomeFcmService extends FirebaseMessagingService {
         return messageId == null ? intent.getStringExtra("message_id") : messageId;
     }
 
-    private int getMessageIdInInteger(Intent intent) {
-        String messageId = intent.getStringExtra("google.message_id");
-
-        if(!StringUtils.getInstance().isNullOrEmpty(messageId)) {
-            String pattern = "^.*:(\\d{1,8})\\%";
-            Pattern regex = Pattern.compile(pattern);
-            Matcher matcher = regex.matcher(messageId);
-
-            if (matcher.find())
-                return Integer.parseInt(Objects.requireNonNull(matcher.group(1)));
-        }
-
-        return IntegerUtils.generateNextRandomId();
-    }
-
-    private void handleMessageIntent(Intent intent) {
+    private void handleMessageIntent(Intent intent, long receivedTime) {
         String fcmMessageId = getMessageIdInString(intent);
 
         if(!StringUtils.getInstance().isNullOrEmpty(fcmMessageId)){
             Logger.d(TAG, "received a new fcm push (id: "+fcmMessageId+")");
+            FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+            metricsManager.incrementCounter(FcmMetricsManager.COUNTER_PUSHES_RECEIVED);
 
             if (!this.alreadyReceivedMessage(fcmMessageId))
-                this.passMessageIntentToSdk(intent);
+                this.passMessageIntentToSdk(intent, receivedTime);
+            else
+                metricsManager.incrementCounter(FcmMetricsManager.COUNTER_DUPLICATED_PUSHES);
         }
     }
 
-    private boolean alreadyReceivedMessage(String messageId) {
-        if (TextUtils.isEmpty(messageId)) {
-            return false;
-        } else if (recentlyReceivedMessageIds.contains(messageId)) {
-            Logger.d(TAG, "Received duplicated message: " + messageId);
-            return true;
-        } else {
-            if (recentlyReceivedMessageIds.size() >= 10) {
-                recentlyReceivedMessageIds.remove();
-            }
-
-            recentlyReceivedMessageIds.add(messageId);
-            return false;
+    /// Pushes are processed on the Firebase messaging thread, which runs one
+    /// handleIntent at a time and holds the Firebase wake lock until it returns
+    private void processPushContent(Intent intent, long receivedTime) {
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+        long startTime = metricsManager.beginStage(PipelineStage.PushProcessing);
+        try {
+            RemoteMessage remoteMessage =
+                    FcmInterpreter.executeRemoteInstructions(
+                            getApplicationContext(), intent, receivedTime, requiresRemoteMessage);
+            if(remoteMessage != null)
+                onMessageReceived(remoteMessage);
+        } finally {
+            metricsManager.endStage(PipelineStage.PushProcessing, startTime);
         }
     }
 
-    private void passMessageIntentToSdk(Intent intent) {
+    private boolean alreadyReceivedMessage(String messageId) {
+        return ReceivedMessageManager
+                .getInstance()
+                .isDuplicatedMessage(this, messageId);
+    }
+
+    private void passMessageIntentToSdk(Intent intent, long receivedTime) {
         String messageType = intent.getStringExtra("message_type");
         if (messageType == null)
             messageType = "gcm";
@@ -171,9 +256,7 @@ public abstract class AwesomeFcmService extends FirebaseMessagingService {
 
             case "gcm":
                 MessagingAnalytics.logNotificationReceived(intent);
-                RemoteMessage remoteMessage = FcmInterpreter.executeRemoteInstructions(this, intent);
-                if(remoteMessage != null)
-                    this.onMessageReceived(remoteMessage);
+                processPushContent(intent, receivedTime);
                 break;
 
             case "send_error":
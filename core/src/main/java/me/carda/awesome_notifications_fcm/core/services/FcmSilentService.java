@@ -12,8 +12,10 @@ import me.carda.awesome_notifications.core.exceptions.ExceptionCode;
 import me.carda.awesome_notifications.core.exceptions.ExceptionFactory;
 import me.carda.awesome_notifications.core.logs.Logger;
 import me.carda.awesome_notifications_fcm.core.AwesomeNotificationsFcm;
+import me.carda.awesome_notifications_fcm.core.FcmDefinitions;
 import me.carda.awesome_notifications_fcm.core.background.FcmBackgroundExecutor;
 import me.carda.awesome_notifications_fcm.core.managers.FcmDefaultsManager;
+import me.carda.awesome_notifications_fcm.core.threads.SilentDataQueue;
 
 public class FcmSilentService extends JobIntentService {
     private static final String TAG = "FcmSilentService";
@@ -48,6 +50,8 @@ public class FcmSilentService extends JobIntentService {
                 return;
             }
 
+            // Silent data stays journaled until the executor has processed it,
+            // to be delivered again on the next start if the process dies before
             FcmBackgroundExecutor.runBackgroundExecutor(
                     this,
                     intent,
@@ -64,6 +68,11 @@ public class FcmSilentService extends JobIntentService {
                             "A new silent background service could not be executed",
                             ExceptionCode.DETAILED_INVALID_ARGUMENTS,
                             e);
+        } finally {
+            SilentDataQueue
+                    .getInstance()
+                    .onBatchProcessed(
+                            intent.getStringExtra(FcmDefinitions.NOTIFICATION_SILENT_DATA_PRIORITY));
         }
     }
 
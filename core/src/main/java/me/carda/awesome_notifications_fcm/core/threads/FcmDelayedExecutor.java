@@ -0,0 +1,50 @@
+package me.carda.awesome_notifications_fcm.core.threads;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import me.carda.awesome_notifications.core.logs.Logger;
+
+/// Single daemon thread used by the FCM plugin to run short delayed tasks,
+/// such as the end of coalescing and throttling windows.
+public final class FcmDelayedExecutor {
+
+    public static final String TAG = "FcmDelayedExecutor";
+
+    private static ScheduledThreadPoolExecutor executor;
+
+    private FcmDelayedExecutor(){}
+
+    @NonNull
+    public static synchronized ScheduledFuture<?> schedule(
+            @NonNull final Runnable task,
+            long delayMillis
+    ) {
+        if (executor == null) {
+            executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "AwnFcmDelayed");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.setRemoveOnCancelPolicy(true);
+        }
+
+        return executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (Exception exception) {
+                    Logger.e(TAG, "Delayed task failed: " + exception.getMessage());
+                }
+            }
+        }, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,210 @@
+package me.carda.awesome_notifications_fcm.core.threads;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import me.carda.awesome_notifications.core.AwesomeNotifications;
+import me.carda.awesome_notifications.core.logs.Logger;
+import me.carda.awesome_notifications_fcm.core.metrics.FcmMetricsManager;
+
+/// Rate limits the notification updates sent to the NotificationManager, which
+/// silently discards updates posted too fast. It is disabled by default. Once
+/// enabled, updates of the same notification id wait at least the minimum update
+/// interval between two sends, and a global rate shared by every notification
+/// can also be set. Updates that arrive earlier are held and replaced by newer
+/// ones, so the most recent state of every notification is the one displayed.
+/// Held updates are sent outside of the Firebase wake lock, so the FCM service
+/// flushes them before being destroyed.
+public final class NotificationUpdateThrottler {
+
+    public static final String TAG = "NotificationUpdateThrottler";
+
+    /// Held updates replaced by a newer update of the same notification
+    public static final String COUNTER_MERGED_UPDATES = "mergedNotificationUpdates";
+    /// Held updates sent after their delay
+    public static final String COUNTER_DEFERRED_UPDATES = "deferredNotificationUpdates";
+
+    // Updates are not delayed unless the rates are set
+    public static final long DEFAULT_MIN_UPDATE_INTERVAL_MILLIS = 0;
+    public static final int DEFAULT_MAX_UPDATES_PER_SECOND = 0;
+
+    private static final int MAX_IDLE_STATES = 64;
+
+    private static final class UpdateState {
+        long lastSentMillis;
+        Runnable pendingUpdate;
+        boolean isFlushScheduled;
+    }
+
+    private final Map<Integer, UpdateState> updateStates = new HashMap<>();
+
+    private long minUpdateIntervalMillis = DEFAULT_MIN_UPDATE_INTERVAL_MILLIS;
+    private int maxUpdatesPerSecond = DEFAULT_MAX_UPDATES_PER_SECOND;
+
+    private double availableSends = DEFAULT_MAX_UPDATES_PER_SECOND;
+    private long lastRefillMillis = SystemClock.elapsedRealtime();
+
+    // ************** SINGLETON PATTERN ***********************
+
+    private static NotificationUpdateThrottler instance;
+
+    private NotificationUpdateThrottler(){}
+    public static synchronized NotificationUpdateThrottler getInstance() {
+        if (instance == null)
+            instance = new NotificationUpdateThrottler();
+        return instance;
+    }
+
+    // ********************************************************
+
+    /// Zero on both values disables the throttling
+    public synchronized void setUpdateRates(long minUpdateIntervalMillis, int maxUpdatesPerSecond) {
+        this.minUpdateIntervalMillis = Math.max(0, minUpdateIntervalMillis);
+        this.maxUpdatesPerSecond = Math.max(0, maxUpdatesPerSecond);
+        this.availableSends = this.maxUpdatesPerSecond;
+        this.lastRefillMillis = SystemClock.elapsedRealtime();
+    }
+
+    /// Returns false if the update can be sent right now by the caller.
+    /// Otherwise the update is held and sent later, unless a newer update
+    /// for the same notification id replaces it first.
+    public synchronized boolean offer(final int notificationId, @NonNull Runnable update) {
+        if (minUpdateIntervalMillis == 0 && maxUpdatesPerSecond == 0) return false;
+
+        long now = SystemClock.elapsedRealtime();
+        UpdateState state = updateStates.get(notificationId);
+
+        if (state == null) {
+            if (updateStates.size() >= MAX_IDLE_STATES)
+                removeIdleStates(now);
+            state = new UpdateState();
+            state.lastSentMillis = Long.MIN_VALUE / 2;
+            updateStates.put(notificationId, state);
+        }
+
+        if (state.pendingUpdate != null) {
+            state.pendingUpdate = update;
+            FcmMetricsManager
+                    .getInstance()
+                    .incrementCounter(COUNTER_MERGED_UPDATES);
+            return true;
+        }
+
+        long delay = getSendDelay(state, now);
+        if (delay == 0) {
+            consumeSend(state, now);
+            return false;
+        }
+
+        state.pendingUpdate = update;
+        scheduleFlush(notificationId, state, delay);
+
+        if (AwesomeNotifications.debug)
+            Logger.d(TAG, "Notification update " + notificationId + " held for " + delay + "ms");
+        return true;
+    }
+
+    /// Sends every held update as soon as possible, ignoring the rates
+    public void flushAll() {
+        Map<Integer, Runnable> updates = new HashMap<>();
+        synchronized (this) {
+            for (Map.Entry<Integer, UpdateState> entry : updateStates.entrySet()) {
+                UpdateState state = entry.getValue();
+                if (state.pendingUpdate == null) continue;
+                updates.put(entry.getKey(), state.pendingUpdate);
+                state.pendingUpdate = null;
+            }
+        }
+
+        for (Map.Entry<Integer, Runnable> update : updates.entrySet())
+            sendDeferredUpdate(update.getKey(), update.getValue());
+    }
+
+    private void flush(final int notificationId) {
+        Runnable update;
+        synchronized (this) {
+            UpdateState state = updateStates.get(notificationId);
+            if (state == null) return;
+
+            state.isFlushScheduled = false;
+            if (state.pendingUpdate == null) return;
+
+            long now = SystemClock.elapsedRealtime();
+            long delay = getSendDelay(state, now);
+            if (delay > 0) {
+                scheduleFlush(notificationId, state, delay);
+                return;
+            }
+
+            consumeSend(state, now);
+            update = state.pendingUpdate;
+            state.pendingUpdate = null;
+        }
+
+        sendDeferredUpdate(notificationId, update);
+    }
+
+    private void sendDeferredUpdate(int notificationId, @NonNull Runnable update) {
+        FcmMetricsManager
+                .getInstance()
+                .incrementCounter(COUNTER_DEFERRED_UPDATES);
+
+        try {
+            update.run();
+        } catch (Exception exception) {
+            Logger.e(TAG, "Notification update " + notificationId + " failed: " + exception.getMessage());
+        }
+    }
+
+    private void scheduleFlush(final int notificationId, @NonNull UpdateState state, long delay) {
+        if (state.isFlushScheduled) return;
+        state.isFlushScheduled = true;
+
+        FcmDelayedExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush(notificationId);
+            }
+        }, delay);
+    }
+
+    private long getSendDelay(@NonNull UpdateState state, long now) {
+        long delay = Math.max(0, state.lastSentMillis + minUpdateIntervalMillis - now);
+        if (maxUpdatesPerSecond == 0) return delay;
+
+        refillSends(now);
+        if (availableSends < 1)
+            delay = Math.max(delay, (long) Math.ceil((1 - availableSends) * 1000 / maxUpdatesPerSecond));
+        return delay;
+    }
+
+    private void consumeSend(@NonNull UpdateState state, long now) {
+        state.lastSentMillis = now;
+        if (maxUpdatesPerSecond > 0)
+            availableSends -= 1;
+    }
+
+    private void refillSends(long now) {
+        long elapsed = now - lastRefillMillis;
+        if (elapsed <= 0) return;
+
+        availableSends = Math.min(
+                maxUpdatesPerSecond,
+                availableSends + elapsed * maxUpdatesPerSecond / 1000.0);
+        lastRefillMillis = now;
+    }
+
+    private void removeIdleStates(long now) {
+        Iterator<UpdateState> iterator = updateStates.values().iterator();
+        while (iterator.hasNext()) {
+            UpdateState state = iterator.next();
+            if (state.pendingUpdate == null && now - state.lastSentMillis >= minUpdateIntervalMillis)
+                iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package me.carda.awesome_notifications_fcm.core.threads;
+
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import me.carda.awesome_notifications_fcm.core.FcmDefinitions;
+
+/// Dispatch lanes of the silent data. High priority silent data are always
+/// dispatched before the normal ones still waiting in the queue.
+public enum SilentDataPriority {
+    High,
+    Normal;
+
+    private static final String FCM_PRIORITY = "google.priority";
+    private static final String FCM_DELIVERED_PRIORITY = "google.delivered_priority";
+
+    /// The payload hint has precedence over the FCM priority
+    @NonNull
+    public static SilentDataPriority fromPush(@NonNull Bundle extras) {
+        SilentDataPriority priority = fromValue(extras.getString(FcmDefinitions.SILENT_DATA_PRIORITY));
+        if (priority != null) return priority;
+
+        priority = fromValue(extras.getString(FCM_PRIORITY));
+        if (priority != null) return priority;
+
+        priority = fromValue(extras.getString(FCM_DELIVERED_PRIORITY));
+        return priority != null ? priority : Normal;
+    }
+
+    @Nullable
+    public static SilentDataPriority fromValue(@Nullable String value) {
+        if (value == null) return null;
+        if ("high".equalsIgnoreCase(value)) return High;
+        if ("normal".equalsIgnoreCase(value)) return Normal;
+        return null;
+    }
+}
@@ -0,0 +1,541 @@
+package me.carda.awesome_notifications_fcm.core.threads;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+import me.carda.awesome_notifications.core.AwesomeNotifications;
+import me.carda.awesome_notifications.core.logs.Logger;
+import me.carda.awesome_notifications_fcm.core.FcmDefinitions;
+import me.carda.awesome_notifications_fcm.core.broadcasters.broadcasters.FcmBroadcaster;
+import me.carda.awesome_notifications_fcm.core.managers.SilentDataJournalManager;
+import me.carda.awesome_notifications_fcm.core.metrics.FcmMetricsManager;
+import me.carda.awesome_notifications_fcm.core.metrics.LatencyHistogram;
+import me.carda.awesome_notifications_fcm.core.models.SilentDataModel;
+import me.carda.awesome_notifications_fcm.core.utils.SilentDataJournalFile;
+
+/// Accumulates the silent data pushes in memory and delivers them to the
+/// silent service in batches, so a burst of data pushes results in a few
+/// background jobs instead of one job per push. A batch is delivered as soon
+/// as it reaches the maximum batch size or when its oldest silent data has
+/// waited for the maximum latency. Each silent data is journaled as soon as it
+/// is offered, before waiting in its lane, so it survives until the background
+/// executor reports it as processed.
+///
+/// Each priority has its own lane, with its own batching limits and queue
+/// depth. Every batch runs on the same silent service job, one after another,
+/// so each lane hands a single batch at a time to it. While there are high
+/// priority batches waiting, no normal batch is enqueued, so a high priority
+/// batch waits at most behind the normal batch already handed to the service.
+///
+/// Silent data carrying a sync key replace any older silent data with the
+/// same key still waiting in its lane, so a burst of sync requests for the
+/// same resource results in a single background execution.
+public final class SilentDataQueue {
+
+    public static final String TAG = "SilentDataQueue";
+
+    public static final String COUNTER_SILENT_DATA_BATCHES = "silentDataBatches";
+    public static final String COUNTER_BATCHED_SILENT_DATA = "batchedSilentData";
+    public static final String COUNTER_DROPPED_SILENT_DATA = "droppedSilentData";
+    public static final String COUNTER_MERGED_SILENT_DATA = "mergedSilentData";
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 20;
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 50;
+    public static final int DEFAULT_MAX_QUEUE_DEPTH = 500;
+
+    private static final class QueuedSilentData {
+        final byte[] payload;
+        // Zero if it could not be journaled
+        final long sequence;
+        final String syncKey;
+        final long arrivalNanos;
+
+        QueuedSilentData(
+                @NonNull byte[] payload,
+                long sequence,
+                @Nullable String syncKey,
+                long arrivalNanos
+        ) {
+            this.payload = payload;
+            this.sequence = sequence;
+            this.syncKey = syncKey;
+            this.arrivalNanos = arrivalNanos;
+        }
+    }
+
+    private static final class ReadyBatch {
+        final byte[][] payloads;
+        final long[] sequences;
+        final long[] arrivalNanos;
+        final String[] syncKeys;
+        int removedCount;
+
+        ReadyBatch(
+                @NonNull byte[][] payloads,
+                @NonNull long[] sequences,
+                @NonNull long[] arrivalNanos,
+                @NonNull String[] syncKeys
+        ) {
+            this.payloads = payloads;
+            this.sequences = sequences;
+            this.arrivalNanos = arrivalNanos;
+            this.syncKeys = syncKeys;
+        }
+
+        int size() {
+            return payloads.length - removedCount;
+        }
+
+        /// Removes the first silent data with the sync key and returns its journal
+        /// sequence, zero if it was not journaled or -1 if there is none left.
+        /// Removed positions keep a null payload and are skipped when sent.
+        long merge(@NonNull String syncKey) {
+            for (int i = 0; i < syncKeys.length; i++)
+                if (syncKey.equals(syncKeys[i])) return remove(i);
+            return -1;
+        }
+
+        /// Removes the oldest silent data left, with the same result of merge
+        long removeOldest() {
+            for (int i = 0; i < payloads.length; i++)
+                if (payloads[i] != null) return remove(i);
+            return -1;
+        }
+
+        private long remove(int index) {
+            syncKeys[index] = null;
+            payloads[index] = null;
+            removedCount++;
+            return sequences[index];
+        }
+    }
+
+    private static final class Lane {
+        final SilentDataPriority priority;
+        final ArrayDeque<ReadyBatch> readyBatches = new ArrayDeque<>();
+        final LatencyHistogram queueWait = new LatencyHistogram();
+
+        List<QueuedSilentData> pendingSilentData = new ArrayList<>();
+        ScheduledFuture<?> scheduledFlush;
+        int readyCount;
+        int inFlightBatches;
+
+        int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+        long maxLatencyMillis;
+        int maxQueueDepth = DEFAULT_MAX_QUEUE_DEPTH;
+
+        Lane(@NonNull SilentDataPriority priority, long maxLatencyMillis) {
+            this.priority = priority;
+            this.maxLatencyMillis = maxLatencyMillis;
+        }
+
+        int getQueuedCount() {
+            return pendingSilentData.size() + readyCount;
+        }
+    }
+
+    private final Lane highLane = new Lane(SilentDataPriority.High, 0);
+    private final Lane normalLane = new Lane(SilentDataPriority.Normal, DEFAULT_MAX_LATENCY_MILLIS);
+
+    private final Map<String, Boolean> syncKeyCoalescing = new HashMap<>();
+    private boolean isSyncKeyCoalescingEnabled = true;
+
+    private Context applicationContext;
+
+    // ************** SINGLETON PATTERN ***********************
+
+    private static SilentDataQueue instance;
+
+    private SilentDataQueue(){}
+    public static synchronized SilentDataQueue getInstance() {
+        if (instance == null)
+            instance = new SilentDataQueue();
+        return instance;
+    }
+
+    // ********************************************************
+
+    /// Sets the batching limits of the normal priority lane. A batch size of
+    /// one or a latency of zero delivers each silent data alone.
+    public void setBatchLimits(int maxBatchSize, long maxLatencyMillis) {
+        synchronized (this) {
+            normalLane.maxBatchSize = Math.max(1, maxBatchSize);
+            normalLane.maxLatencyMillis = Math.max(0, maxLatencyMillis);
+        }
+        flush();
+    }
+
+    /// Sets all the limits of a priority lane. maxQueueDepth is the number of
+    /// silent data waiting in the lane before the oldest ones are dropped.
+    public void setLaneLimits(
+            @NonNull SilentDataPriority priority,
+            int maxBatchSize,
+            long maxLatencyMillis,
+            int maxQueueDepth
+    ) {
+        synchronized (this) {
+            Lane lane = getLane(priority);
+            lane.maxBatchSize = Math.max(1, maxBatchSize);
+            lane.maxLatencyMillis = Math.max(0, maxLatencyMillis);
+            lane.maxQueueDepth = Math.max(1, maxQueueDepth);
+        }
+        flush();
+    }
+
+    /// Enables or disables the coalescing of every sync key without its own setting
+    public synchronized void setSyncKeyCoalescingEnabled(boolean enabled) {
+        isSyncKeyCoalescingEnabled = enabled;
+    }
+
+    /// Overrides the coalescing setting of a single sync key. Null restores the default.
+    public synchronized void setSyncKeyCoalescing(@NonNull String syncKey, @Nullable Boolean enabled) {
+        if (enabled == null)
+            syncKeyCoalescing.remove(syncKey);
+        else
+            syncKeyCoalescing.put(syncKey, enabled);
+    }
+
+    public void offer(@NonNull Context context, @NonNull SilentDataModel silentData) {
+        offer(context, silentData, SilentDataPriority.Normal);
+    }
+
+    public void offer(
+            @NonNull Context context,
+            @NonNull SilentDataModel silentData,
+            @NonNull SilentDataPriority priority
+    ) {
+        List<Long> releasedSequences = new ArrayList<>();
+        List<Long> replacedSequences = new ArrayList<>();
+        final Lane lane = getLane(priority);
+
+        // Silent data must be on disk before waiting in memory. Concurrent
+        // offers share the same disk flush through the journal group commit.
+        long arrivalNanos = System.nanoTime();
+        byte[] payload = silentData.toBytes();
+        long[] sequences = SilentDataJournalManager
+                .getInstance()
+                .append(context, new byte[][]{ payload });
+        long sequence = sequences == null ? 0 : sequences[0];
+
+        synchronized (this) {
+            if (applicationContext == null)
+                applicationContext = context.getApplicationContext();
+
+            String syncKey = getCoalescingKey(silentData);
+            if (syncKey != null)
+                arrivalNanos = mergeSyncKey(lane, syncKey, arrivalNanos, replacedSequences);
+
+            if (lane.getQueuedCount() >= lane.maxQueueDepth)
+                dropOldest(lane, releasedSequences);
+
+            lane.pendingSilentData.add(
+                    new QueuedSilentData(payload, sequence, syncKey, arrivalNanos));
+            if (lane.pendingSilentData.size() >= lane.maxBatchSize || lane.maxLatencyMillis == 0)
+                readyPendingBatch(lane);
+            else if (lane.scheduledFlush == null)
+                lane.scheduledFlush = FcmDelayedExecutor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush(lane);
+                    }
+                }, lane.maxLatencyMillis);
+        }
+
+        // The journal is only touched outside of the queue lock. Replaced
+        // silent data stay journaled if their replacement could not be.
+        acknowledge(releasedSequences);
+        if (sequence > 0)
+            acknowledge(replacedSequences);
+
+        drain();
+    }
+
+    /// Delivers every pending silent data immediately, respecting the lane limits
+    public void flush() {
+        flush(highLane);
+        flush(normalLane);
+    }
+
+    /// Must be called once the silent service finished handling a batch
+    public void onBatchProcessed(@Nullable String priorityName) {
+        SilentDataPriority priority = SilentDataPriority.fromValue(priorityName);
+        if (priority == null) return;
+
+        synchronized (this) {
+            Lane lane = getLane(priority);
+            if (lane.inFlightBatches > 0)
+                lane.inFlightBatches--;
+        }
+        drain();
+    }
+
+    /// Delivers again, in batches, the silent data journaled by a previous
+    /// process and never processed by the background executor
+    public void replayJournal(@NonNull Context context) {
+        List<SilentDataJournalFile.Entry> entries = SilentDataJournalManager
+                .getInstance()
+                .takeRecoveredEntries(context);
+        if (entries.isEmpty()) return;
+
+        synchronized (this) {
+            if (applicationContext == null)
+                applicationContext = context.getApplicationContext();
+
+            long now = System.nanoTime();
+            int batchSize = normalLane.maxBatchSize;
+            for (int start = 0; start < entries.size(); start += batchSize) {
+                int end = Math.min(entries.size(), start + batchSize);
+                byte[][] payloads = new byte[end - start][];
+                long[] sequences = new long[end - start];
+                long[] arrivalNanos = new long[end - start];
+                for (int i = start; i < end; i++) {
+                    payloads[i - start] = entries.get(i).payload;
+                    sequences[i - start] = entries.get(i).sequence;
+                    arrivalNanos[i - start] = now;
+                }
+                normalLane.readyBatches.add(new ReadyBatch(
+                        payloads, sequences, arrivalNanos, new String[payloads.length]));
+                normalLane.readyCount += payloads.length;
+            }
+        }
+        drain();
+    }
+
+    /// Returns the queue depth, the batches in flight and the queue wait of each lane
+    @NonNull
+    public synchronized Map<String, Object> getLaneMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        for (Lane lane : new Lane[]{highLane, normalLane}) {
+            Map<String, Object> laneMetrics = new HashMap<>();
+            laneMetrics.put("queueDepth", lane.getQueuedCount());
+            laneMetrics.put("inFlightBatches", lane.inFlightBatches);
+            laneMetrics.put("queueWait", lane.queueWait.toMap());
+            metrics.put(lane.priority.name(), laneMetrics);
+        }
+        return metrics;
+    }
+
+    public synchronized void resetMetrics() {
+        highLane.queueWait.reset();
+        normalLane.queueWait.reset();
+    }
+
+    @NonNull
+    private Lane getLane(@NonNull SilentDataPriority priority) {
+        return priority == SilentDataPriority.High ? highLane : normalLane;
+    }
+
+    private void flush(@NonNull Lane lane) {
+        synchronized (this) {
+            readyPendingBatch(lane);
+        }
+        drain();
+    }
+
+    /// Moves the pending silent data of the lane into a new ready batch
+    private void readyPendingBatch(@NonNull Lane lane) {
+        if (lane.scheduledFlush != null) {
+            lane.scheduledFlush.cancel(false);
+            lane.scheduledFlush = null;
+        }
+
+        List<QueuedSilentData> pending = lane.pendingSilentData;
+        if (pending.isEmpty()) return;
+        lane.pendingSilentData = new ArrayList<>();
+
+        byte[][] payloads = new byte[pending.size()][];
+        long[] sequences = new long[pending.size()];
+        long[] arrivalNanos = new long[pending.size()];
+        String[] syncKeys = new String[pending.size()];
+        for (int i = 0; i < payloads.length; i++) {
+            QueuedSilentData queued = pending.get(i);
+            payloads[i] = queued.payload;
+            sequences[i] = queued.sequence;
+            arrivalNanos[i] = queued.arrivalNanos;
+            syncKeys[i] = queued.syncKey;
+        }
+
+        lane.readyBatches.add(new ReadyBatch(payloads, sequences, arrivalNanos, syncKeys));
+        lane.readyCount += payloads.length;
+    }
+
+    @Nullable
+    private String getCoalescingKey(@NonNull SilentDataModel silentData) {
+        if (silentData.data == null) return null;
+
+        String syncKey = silentData.data.get(FcmDefinitions.SILENT_DATA_SYNC_KEY);
+        if (syncKey == null || syncKey.isEmpty()) return null;
+
+        Boolean isEnabled = syncKeyCoalescing.get(syncKey);
+        if (isEnabled == null ? !isSyncKeyCoalescingEnabled : !isEnabled) return null;
+        return syncKey;
+    }
+
+    /// Removes the older silent data with the same sync key still waiting in the
+    /// lane and returns the earliest arrival among them, so the queue wait of the
+    /// newest silent data accounts for the whole time the sync request waited.
+    /// The journal sequences of the removed silent data go to replacedSequences,
+    /// to be acknowledged only if the newest silent data was journaled.
+    private long mergeSyncKey(
+            @NonNull Lane lane,
+            @NonNull String syncKey,
+            long arrivalNanos,
+            @NonNull List<Long> replacedSequences
+    ) {
+        int merged = 0;
+
+        for (int i = lane.pendingSilentData.size() - 1; i >= 0; i--) {
+            QueuedSilentData queued = lane.pendingSilentData.get(i);
+            if (!syncKey.equals(queued.syncKey)) continue;
+            arrivalNanos = Math.min(arrivalNanos, queued.arrivalNanos);
+            if (queued.sequence > 0) replacedSequences.add(queued.sequence);
+            lane.pendingSilentData.remove(i);
+            merged++;
+        }
+
+        for (ReadyBatch batch : lane.readyBatches) {
+            long sequence;
+            while ((sequence = batch.merge(syncKey)) >= 0) {
+                if (sequence > 0) replacedSequences.add(sequence);
+                lane.readyCount--;
+                merged++;
+            }
+        }
+
+        if (merged == 0) return arrivalNanos;
+
+        FcmMetricsManager
+                .getInstance()
+                .addToCounter(COUNTER_MERGED_SILENT_DATA, merged);
+        return arrivalNanos;
+    }
+
+    /// Drops the oldest silent data of the lane, one by one, until there is
+    /// room for a new one
+    private void dropOldest(@NonNull Lane lane, @NonNull List<Long> releasedSequences) {
+        int dropped = 0;
+        while (lane.getQueuedCount() >= lane.maxQueueDepth) {
+            ReadyBatch oldestBatch = lane.readyBatches.peek();
+            if (oldestBatch == null) {
+                long sequence = lane.pendingSilentData.remove(0).sequence;
+                if (sequence > 0) releasedSequences.add(sequence);
+                dropped++;
+                continue;
+            }
+
+            long sequence = oldestBatch.removeOldest();
+            if (sequence >= 0) {
+                if (sequence > 0) releasedSequences.add(sequence);
+                lane.readyCount--;
+                dropped++;
+            }
+            if (oldestBatch.size() == 0)
+                lane.readyBatches.poll();
+        }
+        if (dropped == 0) return;
+
+        FcmMetricsManager
+                .getInstance()
+                .addToCounter(COUNTER_DROPPED_SILENT_DATA, dropped);
+        Logger.w(TAG, dropped + " " + lane.priority + " silent data dropped because its lane is full");
+    }
+
+    private void acknowledge(@NonNull List<Long> releasedSequences) {
+        if (releasedSequences.isEmpty()) return;
+
+        long[] sequences = new long[releasedSequences.size()];
+        for (int i = 0; i < sequences.length; i++)
+            sequences[i] = releasedSequences.get(i);
+
+        Context context;
+        synchronized (this) {
+            context = applicationContext;
+        }
+        SilentDataJournalManager
+                .getInstance()
+                .acknowledge(context, sequences);
+    }
+
+    /// Enqueues the ready batches allowed by the lane limits, high priority first
+    private void drain() {
+        List<ReadyBatch> highBatches = new ArrayList<>();
+        List<ReadyBatch> normalBatches = new ArrayList<>();
+        Context context;
+
+        synchronized (this) {
+            context = applicationContext;
+            takeReadyBatches(highLane, highBatches);
+            if (highLane.readyBatches.isEmpty())
+                takeReadyBatches(normalLane, normalBatches);
+        }
+
+        for (ReadyBatch batch : highBatches)
+            sendBatch(context, highLane, batch);
+        for (ReadyBatch batch : normalBatches)
+            sendBatch(context, normalLane, batch);
+    }
+
+    private void takeReadyBatches(@NonNull Lane lane, @NonNull List<ReadyBatch> batches) {
+        while (lane.inFlightBatches == 0 && !lane.readyBatches.isEmpty()) {
+            ReadyBatch batch = lane.readyBatches.poll();
+            lane.readyCount -= batch.size();
+            if (batch.size() == 0) continue;
+
+            lane.inFlightBatches++;
+            batches.add(batch);
+        }
+    }
+
+    private void sendBatch(
+            @NonNull Context context,
+            @NonNull Lane lane,
+            @NonNull ReadyBatch batch
+    ) {
+        // Batches are no longer touched by merges once taken from their lane.
+        // Sequences stay aligned with the payloads, zero for the ones not journaled.
+        byte[][] payloads = new byte[batch.size()][];
+        long[] sequences = new long[batch.size()];
+
+        long now = System.nanoTime();
+        synchronized (this) {
+            for (int i = 0, index = 0; i < batch.payloads.length; i++) {
+                if (batch.payloads[i] == null) continue;
+                payloads[index] = batch.payloads[i];
+                sequences[index] = batch.sequences[i];
+                lane.queueWait.recordNanos(now - batch.arrivalNanos[i]);
+                index++;
+            }
+        }
+
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+        metricsManager.incrementCounter(COUNTER_SILENT_DATA_BATCHES);
+        metricsManager.addToCounter(COUNTER_BATCHED_SILENT_DATA, payloads.length);
+
+        if (AwesomeNotifications.debug)
+            Logger.d(TAG, "Delivering a " + lane.priority + " batch with " +
+                    payloads.length + " silent data");
+
+        try {
+            FcmBroadcaster.SendBroadcastSilentDataBatch(
+                    context,
+                    payloads,
+                    sequences,
+                    lane.priority.name());
+
+        } catch (Exception exception) {
+            Logger.e(TAG, "Silent data batch could not be delivered: " + exception.getMessage());
+            synchronized (this) {
+                lane.inFlightBatches--;
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package me.carda.awesome_notifications_fcm.core.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/// Compact tagged binary encoding used to persist and transfer the FCM models.
+/// Each encoded model starts with a magic byte, the model type and the format
+/// version, followed by its fields. Every field carries its tag and wire type,
+/// so readers skip the fields they do not know and newer writers can add
+/// fields without breaking older readers.
+public final class FcmBinaryCodec {
+
+    public static final byte MAGIC = (byte) 0xA5;
+
+    public static final byte TYPE_SILENT_DATA = 1;
+    public static final byte TYPE_FCM_DEFAULTS = 2;
+
+    private static final int HEADER_SIZE = 3;
+
+    static final int WIRE_VARINT = 0;
+    static final int WIRE_LENGTH_DELIMITED = 2;
+
+    private FcmBinaryCodec(){}
+
+    /// Returns true if the data was encoded by this codec, and not as json
+    public static boolean isBinary(@Nullable byte[] data) {
+        return data != null && data.length >= HEADER_SIZE && data[0] == MAGIC;
+    }
+
+    /// Joins several encoded models into a single frame, each one prefixed by its length
+    @NonNull
+    public static byte[] joinFrames(@NonNull byte[][] frames) {
+        Writer writer = new Writer(16);
+        writer.writeRawVarint(frames.length);
+        for (byte[] frame : frames) {
+            writer.writeRawVarint(frame.length);
+            writer.writeRaw(frame, 0, frame.length);
+        }
+        return writer.toByteArray();
+    }
+
+    @NonNull
+    public static byte[][] splitFrames(@NonNull byte[] data) throws IOException {
+        Reader reader = new Reader(data);
+        int count = (int) reader.readRawVarint();
+        if (count < 0 || count > data.length) throw new IOException("Invalid frame count");
+
+        byte[][] frames = new byte[count][];
+        for (int i = 0; i < count; i++)
+            frames[i] = reader.readRawBytes();
+        return frames;
+    }
+
+    public static final class Writer {
+        private byte[] buffer;
+        private int size;
+
+        public Writer(int initialCapacity) {
+            buffer = new byte[Math.max(16, initialCapacity)];
+        }
+
+        @NonNull
+        public Writer writeHeader(byte modelType, byte version) {
+            ensureCapacity(HEADER_SIZE);
+            buffer[size++] = MAGIC;
+            buffer[size++] = modelType;
+            buffer[size++] = version;
+            return this;
+        }
+
+        public void writeLong(int tag, long value) {
+            writeRawVarint(((long) tag << 3) | WIRE_VARINT);
+            // Zigzag keeps small negative values short
+            writeRawVarint((value << 1) ^ (value >> 63));
+        }
+
+        public void writeString(int tag, @Nullable String value) {
+            if (value == null) return;
+            writeBytes(tag, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public void writeBytes(int tag, @NonNull byte[] value) {
+            writeRawVarint(((long) tag << 3) | WIRE_LENGTH_DELIMITED);
+            writeRawVarint(value.length);
+            writeRaw(value, 0, value.length);
+        }
+
+        public void writeStringList(int tag, @Nullable List<String> values) {
+            if (values == null) return;
+            for (String value : values)
+                if (value != null) writeString(tag, value);
+        }
+
+        /// Writes each entry as a nested field holding its key (tag 1) and value (tag 2)
+        public void writeStringMap(int tag, @Nullable Map<String, String> values) {
+            if (values == null) return;
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) continue;
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+
+                writeRawVarint(((long) tag << 3) | WIRE_LENGTH_DELIMITED);
+                writeRawVarint(2 + getVarintSize(key.length) + key.length
+                        + getVarintSize(value.length) + value.length);
+                writeBytes(1, key);
+                writeBytes(2, value);
+            }
+        }
+
+        @NonNull
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        void writeRawVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeRaw(@NonNull byte[] value, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(value, offset, buffer, size, length);
+            size += length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra <= buffer.length) return;
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+
+        private static int getVarintSize(long value) {
+            int bytes = 1;
+            while ((value & ~0x7FL) != 0) {
+                value >>>= 7;
+                bytes++;
+            }
+            return bytes;
+        }
+    }
+
+    public static final class Reader {
+        private final byte[] data;
+        private final int end;
+        private int position;
+
+        private int tag;
+        private int wireType;
+
+        public Reader(@NonNull byte[] data) {
+            this(data, 0, data.length);
+        }
+
+        private Reader(@NonNull byte[] data, int offset, int end) {
+            this.data = data;
+            this.position = offset;
+            this.end = end;
+        }
+
+        /// Checks the header and returns the format version of the model
+        public int readHeader(byte expectedModelType) throws IOException {
+            if (end - position < HEADER_SIZE || data[position] != MAGIC)
+                throw new IOException("Data was not encoded as a binary model");
+            if (data[position + 1] != expectedModelType)
+                throw new IOException("Unexpected binary model type " + data[position + 1]);
+
+            int version = data[position + 2];
+            position += HEADER_SIZE;
+            return version;
+        }
+
+        /// Moves to the next field, returning false at the end of the data
+        public boolean nextField() throws IOException {
+            if (position >= end) return false;
+            long key = readRawVarint();
+            tag = (int) (key >>> 3);
+            wireType = (int) (key & 0x7);
+            return true;
+        }
+
+        public int getTag() {
+            return tag;
+        }
+
+        public long readLong() throws IOException {
+            checkWireType(WIRE_VARINT);
+            long value = readRawVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        @NonNull
+        public String readString() throws IOException {
+            checkWireType(WIRE_LENGTH_DELIMITED);
+            int length = readLength();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        /// Reads a map entry written by writeStringMap into the target map
+        public void readStringMapEntry(@NonNull Map<String, String> target) throws IOException {
+            checkWireType(WIRE_LENGTH_DELIMITED);
+            int length = readLength();
+            Reader entryReader = new Reader(data, position, position + length);
+            position += length;
+
+            String key = null, value = null;
+            while (entryReader.nextField()) {
+                switch (entryReader.getTag()) {
+                    case 1: key = entryReader.readString(); break;
+                    case 2: value = entryReader.readString(); break;
+                    default: entryReader.skipField();
+                }
+            }
+            if (key != null && value != null)
+                target.put(key, value);
+        }
+
+        public void skipField() throws IOException {
+            switch (wireType) {
+                case WIRE_VARINT:
+                    readRawVarint();
+                    break;
+                case WIRE_LENGTH_DELIMITED:
+                    int length = readLength();
+                    position += length;
+                    break;
+                default:
+                    throw new IOException("Unknown wire type " + wireType);
+            }
+        }
+
+        long readRawVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= end) throw new IOException("Truncated binary model");
+                byte current = data[position++];
+                value |= (long) (current & 0x7F) << shift;
+                if ((current & 0x80) == 0) return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        @NonNull
+        byte[] readRawBytes() throws IOException {
+            int length = readLength();
+            byte[] value = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return value;
+        }
+
+        private int readLength() throws IOException {
+            long length = readRawVarint();
+            if (length < 0 || length > end - position) throw new IOException("Truncated binary model");
+            return (int) length;
+        }
+
+        private void checkWireType(int expected) throws IOException {
+            if (wireType != expected)
+                throw new IOException("Unexpected wire type " + wireType + " on tag " + tag);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package me.carda.awesome_notifications_fcm.core.utils;
+
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import me.carda.awesome_notifications.core.Definitions;
+import me.carda.awesome_notifications_fcm.core.FcmDefinitions;
+
+/// Read only view of the FCM data, backed by the push extras or by a data map.
+/// Firebase metadata keys are never visible and the payload view also hides
+/// the awesome reserved sections, which stay readable through getSection.
+/// Nothing is copied and any attempt to change the view throws an
+/// UnsupportedOperationException, so the same data can be safely shared.
+public final class FcmDataView extends AbstractMap<String, String> {
+
+    private static final Set<String> RESERVED_KEYS = new HashSet<>(Arrays.asList(
+            Definitions.NOTIFICATION_MODEL_CONTENT,
+            Definitions.NOTIFICATION_MODEL_SCHEDULE,
+            Definitions.NOTIFICATION_MODEL_BUTTONS,
+            Definitions.NOTIFICATION_MODEL_LOCALIZATIONS,
+            FcmDefinitions.NOTIFICATION_MODEL_ANDROID,
+            FcmDefinitions.NOTIFICATION_MODEL_IOS));
+
+    private final Bundle bundle;
+    private final Map<String, String> map;
+    private final boolean hideReservedKeys;
+
+    private Set<Entry<String, String>> entrySet;
+    private int size = -1;
+
+    private FcmDataView(
+            @Nullable Bundle bundle,
+            @Nullable Map<String, String> map,
+            boolean hideReservedKeys
+    ) {
+        this.bundle = bundle;
+        this.map = map;
+        this.hideReservedKeys = hideReservedKeys;
+    }
+
+    /// Custom data of a notification push, without the awesome sections
+    @NonNull
+    public static FcmDataView payloadOf(@NonNull Bundle extras) {
+        return new FcmDataView(extras, null, true);
+    }
+
+    /// Custom data of a notification push, without the awesome sections
+    @NonNull
+    public static FcmDataView payloadOf(@NonNull Map<String, String> remoteData) {
+        return new FcmDataView(null, remoteData, true);
+    }
+
+    /// Every data entry of the push, the same ones exposed by RemoteMessage.getData
+    @NonNull
+    public static FcmDataView dataOf(@NonNull Bundle extras) {
+        return new FcmDataView(extras, null, false);
+    }
+
+    /// Returns the raw value of a data key, even if it is hidden from the view
+    @Nullable
+    public String getSection(@NonNull String key) {
+        if (map != null) return map.get(key);
+
+        Object value = bundle.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    public boolean isVisible(@NonNull String key) {
+        if (hideReservedKeys && RESERVED_KEYS.contains(key)) return false;
+        if (key.startsWith("google.") || key.startsWith("gcm.")) return false;
+        switch (key) {
+            case "from":
+            case "message_type":
+            case "collapse_key":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof String) || !isVisible((String) key)) return null;
+        return getSection((String) key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        if (size < 0) {
+            int count = 0;
+            for (String key : getSourceKeys())
+                if (isVisible(key) && getSection(key) != null)
+                    count++;
+            size = count;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @NonNull
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        if (entrySet == null)
+            entrySet = new AbstractSet<Entry<String, String>>() {
+                @NonNull
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new EntryIterator(getSourceKeys().iterator());
+                }
+
+                @Override
+                public int size() {
+                    return FcmDataView.this.size();
+                }
+            };
+        return entrySet;
+    }
+
+    @NonNull
+    private Set<String> getSourceKeys() {
+        return map != null ? map.keySet() : bundle.keySet();
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, String>> {
+        private final Iterator<String> keys;
+        private Entry<String, String> next;
+
+        EntryIterator(@NonNull Iterator<String> keys) {
+            this.keys = keys;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && keys.hasNext()) {
+                String key = keys.next();
+                if (!isVisible(key)) continue;
+
+                String value = getSection(key);
+                if (value != null)
+                    next = new SimpleImmutableEntry<>(key, value);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (next == null) throw new NoSuchElementException();
+            Entry<String, String> current = next;
+            advance();
+            return current;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("FcmDataView is read only");
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package me.carda.awesome_notifications_fcm.core.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/// Stateless json decoder for the push data strings. Values are streamed from
+/// a JsonReader straight into maps and lists, without creating Gson instances
+/// or resolving type tokens. Numbers written without fraction or exponent are
+/// returned as Integer, or Long if they do not fit, and any other number as
+/// Double, even when its value is integral (1.0 stays a Double).
+public final class FcmJsonDecoder {
+
+    private FcmJsonDecoder(){}
+
+    @Nullable
+    public static Map<String, Object> decodeMap(@Nullable String json) throws IOException {
+        if (json == null) return null;
+
+        JsonReader reader = newReader(json);
+        try {
+            if (reader.peek() == JsonToken.NULL) return null;
+            return readMap(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Nullable
+    public static List<Object> decodeList(@Nullable String json) throws IOException {
+        if (json == null) return null;
+
+        JsonReader reader = newReader(json);
+        try {
+            if (reader.peek() == JsonToken.NULL) return null;
+            return readList(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /// Decodes a json array of objects, ignoring any element that is not an object
+    @Nullable
+    public static List<Map<String, Object>> decodeMapList(@Nullable String json) throws IOException {
+        if (json == null) return null;
+
+        JsonReader reader = newReader(json);
+        try {
+            if (reader.peek() == JsonToken.NULL) return null;
+
+            List<Map<String, Object>> list = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() == JsonToken.BEGIN_OBJECT)
+                    list.add(readMap(reader));
+                else
+                    reader.skipValue();
+            }
+            reader.endArray();
+            return list;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /// Returns the value found at the path of object keys, reading only until
+    /// it is found. Invalid json or a missing path returns null.
+    @Nullable
+    public static Object findValue(@Nullable String json, @NonNull String... path) {
+        if (json == null || path.length == 0) return null;
+
+        JsonReader reader = newReader(json);
+        try {
+            for (int depth = 0; depth < path.length; depth++) {
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) return null;
+
+                reader.beginObject();
+                boolean found = false;
+                while (reader.hasNext()) {
+                    if (path[depth].equals(reader.nextName())) {
+                        found = true;
+                        break;
+                    }
+                    reader.skipValue();
+                }
+                if (!found) return null;
+            }
+            return readValue(reader);
+
+        } catch (IOException | RuntimeException ignored) {
+            return null;
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /// Streams the json object over target, applying the same rules of a deep
+    /// merge: objects are merged into existing maps, arrays add their missing
+    /// elements into existing lists and any other value replaces the current one
+    public static void decodeInto(@NonNull Map<String, Object> target, @Nullable String json) throws IOException {
+        if (json == null) return;
+
+        JsonReader reader = newReader(json);
+        try {
+            if (reader.peek() == JsonToken.NULL) return;
+            mergeMap(reader, target);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void mergeMap(@NonNull JsonReader reader, @NonNull Map<String, Object> target) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            Object current = target.get(key);
+            JsonToken token = reader.peek();
+
+            if (token == JsonToken.BEGIN_OBJECT && current instanceof Map) {
+                // Read only views are replaced by a copy before receiving the overrides
+                if (current instanceof FcmDataView) {
+                    current = new HashMap<String, Object>((FcmDataView) current);
+                    target.put(key, current);
+                }
+                mergeMap(reader, (Map<String, Object>) current);
+            }
+
+            else if (token == JsonToken.BEGIN_ARRAY && current instanceof List) {
+                List<Object> currentList = (List<Object>) current;
+                for (Object element : readList(reader))
+                    if (!currentList.contains(element))
+                        currentList.add(element);
+            }
+
+            else
+                target.put(key, readValue(reader));
+        }
+        reader.endObject();
+    }
+
+    @NonNull
+    private static JsonReader newReader(@NonNull String json) {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
+        return reader;
+    }
+
+    @NonNull
+    public static Map<String, Object> readMap(@NonNull JsonReader reader) throws IOException {
+        Map<String, Object> map = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            map.put(key, readValue(reader));
+        }
+        reader.endObject();
+        return map;
+    }
+
+    @NonNull
+    public static List<Object> readList(@NonNull JsonReader reader) throws IOException {
+        List<Object> list = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext())
+            list.add(readValue(reader));
+        reader.endArray();
+        return list;
+    }
+
+    @Nullable
+    public static Object readValue(@NonNull JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readMap(reader);
+
+            case BEGIN_ARRAY:
+                return readList(reader);
+
+            case STRING:
+                return reader.nextString();
+
+            case NUMBER:
+                return readNumber(reader.nextString());
+
+            case BOOLEAN:
+                return reader.nextBoolean();
+
+            case NULL:
+                reader.nextNull();
+                return null;
+
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    @NonNull
+    private static Number readNumber(@NonNull String text) {
+        if (isIntegral(text)) {
+            try {
+                return narrow(Long.parseLong(text));
+            } catch (NumberFormatException ignored) {
+                // Too large for a long, handled as double below
+            }
+        }
+        return Double.parseDouble(text);
+    }
+
+    @NonNull
+    private static Number narrow(long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+            return (int) value;
+        return value;
+    }
+
+    private static boolean isIntegral(@NonNull String text) {
+        int length = text.length();
+        int start = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+        if (start == length) return false;
+
+        for (int i = start; i < length; i++) {
+            char character = text.charAt(i);
+            if (character < '0' || character > '9') return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,142 @@
+package me.carda.awesome_notifications_fcm.core.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+
+/// Single pass reader of flat json arrays sent as text, such as [1, 2, 3] or
+/// ["a", "b"]. Brackets are optional, surrounding whitespaces and quotes are
+/// removed and numeric values are read straight from the text, without any
+/// intermediate string or regex matching.
+public final class JsonListScanner {
+
+    private JsonListScanner(){}
+
+    /// Adds every integer value of the list into target and returns how
+    /// many values were ignored for not being valid integers
+    public static int scanIntegers(@Nullable String text, @NonNull Collection<Integer> target) {
+        if (text == null) return 0;
+
+        int invalidValues = 0;
+        int length = text.length();
+        int position = skipSeparators(text, 0);
+
+        while (position < length) {
+            int end = findValueEnd(text, position);
+            int start = position, last = end;
+
+            if (text.charAt(start) == '"') {
+                start++;
+                if (last > start && text.charAt(last - 1) == '"') last--;
+                while (start < last && Character.isWhitespace(text.charAt(start))) start++;
+                while (last > start && Character.isWhitespace(text.charAt(last - 1))) last--;
+            }
+
+            long value = 0;
+            boolean negative = start < last && text.charAt(start) == '-';
+            int digitStart = negative ? start + 1 : start;
+            boolean isValid = digitStart < last;
+
+            for (int i = digitStart; i < last && isValid; i++) {
+                char character = text.charAt(i);
+                if (character < '0' || character > '9' || value > Integer.MAX_VALUE) {
+                    isValid = false;
+                    break;
+                }
+                value = value * 10 + (character - '0');
+            }
+
+            if (negative) value = -value;
+            if (isValid && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+                target.add((int) value);
+            else
+                invalidValues++;
+
+            position = skipSeparators(text, end);
+        }
+        return invalidValues;
+    }
+
+    /// Adds every non empty value of the list into target, without quotes
+    public static void scanStrings(@Nullable String text, @NonNull Collection<String> target) {
+        if (text == null) return;
+
+        int length = text.length();
+        int position = skipSeparators(text, 0);
+
+        while (position < length) {
+            int end = findValueEnd(text, position);
+
+            if (text.charAt(position) == '"')
+                addQuotedString(text, position + 1, end, target);
+            else
+                target.add(text.substring(position, end));
+
+            position = skipSeparators(text, end);
+        }
+    }
+
+    private static void addQuotedString(
+            @NonNull String text,
+            int start,
+            int end,
+            @NonNull Collection<String> target
+    ) {
+        int last = end;
+        if (last > start && text.charAt(last - 1) == '"') last--;
+
+        if (text.indexOf('\\', start) < 0 || text.indexOf('\\', start) >= last) {
+            if (last > start)
+                target.add(text.substring(start, last));
+            return;
+        }
+
+        StringBuilder builder = new StringBuilder(last - start);
+        for (int i = start; i < last; i++) {
+            char character = text.charAt(i);
+            if (character == '\\' && i + 1 < last)
+                character = text.charAt(++i);
+            builder.append(character);
+        }
+        if (builder.length() > 0)
+            target.add(builder.toString());
+    }
+
+    /// Returns the position right after the value, ignoring trailing whitespaces
+    private static int findValueEnd(@NonNull String text, int start) {
+        int length = text.length();
+        int position = start;
+
+        if (text.charAt(start) == '"') {
+            position++;
+            while (position < length) {
+                char character = text.charAt(position);
+                if (character == '\\') position += 2;
+                else if (character == '"') { position++; break; }
+                else position++;
+            }
+            return Math.min(position, length);
+        }
+
+        int end = position;
+        while (position < length && !isSeparator(text.charAt(position))) {
+            if (!Character.isWhitespace(text.charAt(position)))
+                end = position + 1;
+            position++;
+        }
+        return end;
+    }
+
+    private static int skipSeparators(@NonNull String text, int position) {
+        int length = text.length();
+        while (position < length &&
+                (isSeparator(text.charAt(position)) || Character.isWhitespace(text.charAt(position))))
+            position++;
+        return position;
+    }
+
+    private static boolean isSeparator(char character) {
+        return character == ',' || character == '[' || character == ']';
+    }
+}
@@ -0,0 +1,190 @@
+package me.carda.awesome_notifications_fcm.core.utils;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/// Fixed size ring of (timestamp, value, message id) records stored on disk.
+/// Every record takes one slot of SLOT_SIZE bytes, so appending a new record is
+/// a single positional write that overwrites the oldest slot when the ring is full.
+public final class MessageRingFile {
+
+    public static final int MAX_KEY_BYTES = 114;
+
+    private static final int MAGIC = 0x4157_4652; // "AWFR"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 128;
+
+    public static final class Entry {
+        public final long timestamp;
+        public final int value;
+        public final String key;
+
+        public Entry(long timestamp, int value, @NonNull String key) {
+            this.timestamp = timestamp;
+            this.value = value;
+            this.key = key;
+        }
+    }
+
+    private final File file;
+    private final byte[] slotBuffer = new byte[SLOT_SIZE];
+
+    private RandomAccessFile randomAccessFile;
+    private int capacity;
+    private int nextSlot;
+    private int count;
+
+    public MessageRingFile(@NonNull File file) {
+        this.file = file;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /// Opens the ring file and returns its records from the oldest to the newest.
+    /// A missing, corrupted or differently sized file is recreated empty.
+    @NonNull
+    public synchronized List<Entry> open(int desiredCapacity) throws IOException {
+        close();
+        randomAccessFile = new RandomAccessFile(file, "rw");
+
+        List<Entry> entries = new ArrayList<>();
+        if (!readHeader()) {
+            formatFile(desiredCapacity);
+            return entries;
+        }
+
+        for (int slot = 0; slot < count; slot++) {
+            Entry entry = readSlot(slot);
+            if (entry != null)
+                entries.add(entry);
+        }
+
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry first, Entry second) {
+                return Long.compare(first.timestamp, second.timestamp);
+            }
+        });
+
+        if (capacity != desiredCapacity) {
+            if (entries.size() > desiredCapacity)
+                entries = new ArrayList<>(
+                        entries.subList(entries.size() - desiredCapacity, entries.size()));
+            rewrite(entries, desiredCapacity);
+        }
+
+        return entries;
+    }
+
+    public synchronized void append(long timestamp, int value, @NonNull String key) throws IOException {
+        if (randomAccessFile == null || capacity == 0) return;
+
+        writeSlot(nextSlot, timestamp, value, key);
+
+        nextSlot = (nextSlot + 1) % capacity;
+        if (count < capacity) count++;
+        writeHeader();
+    }
+
+    /// Replaces the whole content of the ring, keeping the entries order
+    public synchronized void rewrite(@NonNull List<Entry> entries, int newCapacity) throws IOException {
+        if (randomAccessFile == null) return;
+
+        formatFile(newCapacity);
+        int first = Math.max(0, entries.size() - newCapacity);
+        for (int i = first; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            writeSlot(nextSlot, entry.timestamp, entry.value, entry.key);
+            nextSlot = (nextSlot + 1) % capacity;
+            count++;
+        }
+        writeHeader();
+    }
+
+    public synchronized void close() {
+        if (randomAccessFile == null) return;
+        try {
+            randomAccessFile.close();
+        } catch (IOException ignored) {
+        }
+        randomAccessFile = null;
+    }
+
+    private boolean readHeader() throws IOException {
+        if (randomAccessFile.length() < HEADER_SIZE) return false;
+
+        randomAccessFile.seek(0);
+        if (randomAccessFile.readInt() != MAGIC) return false;
+        if (randomAccessFile.readShort() != VERSION) return false;
+        if (randomAccessFile.readShort() != SLOT_SIZE) return false;
+
+        capacity = randomAccessFile.readInt();
+        nextSlot = randomAccessFile.readInt();
+        count = randomAccessFile.readInt();
+
+        return capacity > 0 &&
+                nextSlot >= 0 && nextSlot < capacity &&
+                count >= 0 && count <= capacity &&
+                randomAccessFile.length() >= HEADER_SIZE + (long) count * SLOT_SIZE;
+    }
+
+    private void writeHeader() throws IOException {
+        randomAccessFile.seek(0);
+        randomAccessFile.writeInt(MAGIC);
+        randomAccessFile.writeShort(VERSION);
+        randomAccessFile.writeShort(SLOT_SIZE);
+        randomAccessFile.writeInt(capacity);
+        randomAccessFile.writeInt(nextSlot);
+        randomAccessFile.writeInt(count);
+    }
+
+    private void formatFile(int newCapacity) throws IOException {
+        capacity = Math.max(1, newCapacity);
+        nextSlot = 0;
+        count = 0;
+        randomAccessFile.setLength(HEADER_SIZE);
+        writeHeader();
+    }
+
+    private Entry readSlot(int slot) throws IOException {
+        randomAccessFile.seek(HEADER_SIZE + (long) slot * SLOT_SIZE);
+        randomAccessFile.readFully(slotBuffer);
+
+        ByteBuffer buffer = ByteBuffer.wrap(slotBuffer);
+        long timestamp = buffer.getLong();
+        int value = buffer.getInt();
+        int keyLength = buffer.getShort();
+        if (keyLength <= 0 || keyLength > MAX_KEY_BYTES) return null;
+
+        return new Entry(
+                timestamp,
+                value,
+                new String(slotBuffer, buffer.position(), keyLength, StandardCharsets.UTF_8));
+    }
+
+    private void writeSlot(int slot, long timestamp, int value, @NonNull String key) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int keyLength = Math.min(keyBytes.length, MAX_KEY_BYTES);
+
+        ByteBuffer buffer = ByteBuffer.wrap(slotBuffer);
+        buffer.putLong(timestamp);
+        buffer.putInt(value);
+        buffer.putShort((short) keyLength);
+        buffer.put(keyBytes, 0, keyLength);
+
+        randomAccessFile.seek(HEADER_SIZE + (long) slot * SLOT_SIZE);
+        randomAccessFile.write(slotBuffer);
+    }
+}
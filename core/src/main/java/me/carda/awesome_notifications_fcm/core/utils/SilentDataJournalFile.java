@@ -0,0 +1,376 @@
+package me.carda.awesome_notifications_fcm.core.utils;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/// Append only journal of encoded silent data payloads. Each record carries its
+/// own CRC32, so a record torn by a crash is detected and cut off on the next
+/// open. Payloads are removed by appending acknowledge records, and the file is
+/// compacted once most of it holds acknowledged payloads. The header keeps the
+/// next sequence, so sequences are never reused after the records are removed.
+/// Appends are group committed: a single fsync makes durable every record
+/// written before it, so concurrent writers share the same disk flush.
+public final class SilentDataJournalFile {
+
+    private static final int MAGIC = 0x4157_534A; // "AWSJ"
+    private static final short VERSION = 2;
+
+    // magic + version + reserved + next sequence
+    private static final int HEADER_SIZE = 4 + 2 + 2 + 8;
+
+    // payload length + crc + type + sequence
+    private static final int RECORD_HEADER_SIZE = 4 + 4 + 1 + 8;
+    private static final int MAX_PAYLOAD_BYTES = 1024 * 1024;
+
+    private static final byte TYPE_PAYLOAD = 1;
+    private static final byte TYPE_ACKNOWLEDGE = 2;
+
+    private static final long MIN_COMPACTION_BYTES = 64 * 1024;
+
+    public static final class Entry {
+        public final long sequence;
+        public final byte[] payload;
+
+        public Entry(long sequence, @NonNull byte[] payload) {
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+    }
+
+    private final File file;
+    private final Object commitLock = new Object();
+    private final CRC32 crc = new CRC32();
+
+    // Payloads not acknowledged yet, in append order
+    private final LinkedHashMap<Long, byte[]> pendingPayloads = new LinkedHashMap<>();
+
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private long nextSequence = 1;
+    private long writePosition;
+    private long pendingBytes;
+
+    // Changes every time the file is replaced, so commits of an old file are ignored
+    private int generation;
+    private long committedPosition;
+
+    public SilentDataJournalFile(@NonNull File file) {
+        this.file = file;
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingPayloads.size();
+    }
+
+    /// Opens the journal and returns the payloads never acknowledged, from the
+    /// oldest to the newest. Anything after the first invalid record is discarded.
+    @NonNull
+    public synchronized List<Entry> open() throws IOException {
+        close();
+        openChannel();
+
+        pendingPayloads.clear();
+        pendingBytes = 0;
+        nextSequence = 1;
+
+        if (!readHeader()) {
+            formatFile();
+        } else {
+            readRecords();
+            if (channel.size() > writePosition)
+                channel.truncate(writePosition);
+        }
+        committedPosition = writePosition;
+
+        List<Entry> entries = new ArrayList<>(pendingPayloads.size());
+        for (Map.Entry<Long, byte[]> pending : pendingPayloads.entrySet())
+            entries.add(new Entry(pending.getKey(), pending.getValue()));
+        return entries;
+    }
+
+    /// Writes every payload and returns after they are on disk, with the
+    /// journal sequence assigned to each one
+    @NonNull
+    public long[] append(@NonNull byte[][] payloads) throws IOException {
+        long[] sequences = new long[payloads.length];
+        int writtenGeneration;
+        long endPosition;
+
+        synchronized (this) {
+            if (channel == null) throw new IOException("Silent data journal is closed");
+
+            int totalSize = 0;
+            for (int i = 0; i < payloads.length; i++) {
+                if (payloads[i].length > MAX_PAYLOAD_BYTES)
+                    throw new IOException("Silent data is too large to be journaled");
+                totalSize += RECORD_HEADER_SIZE + payloads[i].length;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(totalSize);
+            for (int i = 0; i < payloads.length; i++) {
+                sequences[i] = nextSequence++;
+                putRecord(buffer, TYPE_PAYLOAD, sequences[i], payloads[i]);
+            }
+            writeBuffer(buffer);
+
+            for (int i = 0; i < payloads.length; i++) {
+                pendingPayloads.put(sequences[i], payloads[i]);
+                pendingBytes += RECORD_HEADER_SIZE + payloads[i].length;
+            }
+
+            writtenGeneration = generation;
+            endPosition = writePosition;
+        }
+
+        commit(writtenGeneration, endPosition);
+        return sequences;
+    }
+
+    /// Marks the payloads as processed. Acknowledges are not flushed to disk,
+    /// because losing them only means the payloads are replayed once more.
+    public synchronized void acknowledge(@NonNull long[] sequences) throws IOException {
+        if (channel == null) return;
+
+        int count = 0;
+        for (long sequence : sequences)
+            if (pendingPayloads.containsKey(sequence)) count++;
+        if (count == 0) return;
+
+        ByteBuffer buffer = ByteBuffer.allocate(count * RECORD_HEADER_SIZE);
+        for (long sequence : sequences) {
+            byte[] payload = pendingPayloads.remove(sequence);
+            if (payload == null) continue;
+            pendingBytes -= RECORD_HEADER_SIZE + payload.length;
+            putRecord(buffer, TYPE_ACKNOWLEDGE, sequence, new byte[0]);
+        }
+        writeBuffer(buffer);
+
+        compactIfNeeded();
+    }
+
+    /// Acknowledges the oldest payloads until only maxPending remain
+    @NonNull
+    public synchronized List<Long> trimTo(int maxPending) throws IOException {
+        List<Long> dropped = new ArrayList<>();
+        for (Long sequence : pendingPayloads.keySet()) {
+            if (pendingPayloads.size() - dropped.size() <= maxPending) break;
+            dropped.add(sequence);
+        }
+        if (dropped.isEmpty()) return dropped;
+
+        long[] sequences = new long[dropped.size()];
+        for (int i = 0; i < sequences.length; i++)
+            sequences[i] = dropped.get(i);
+        acknowledge(sequences);
+        return dropped;
+    }
+
+    public synchronized void close() {
+        if (randomAccessFile == null) return;
+        try {
+            randomAccessFile.close();
+        } catch (IOException ignored) {
+        }
+        randomAccessFile = null;
+        channel = null;
+        generation++;
+    }
+
+    private void commit(int writtenGeneration, long endPosition) throws IOException {
+        synchronized (commitLock) {
+            FileChannel commitChannel;
+            long targetPosition;
+            synchronized (this) {
+                // A compaction rewrote and flushed the records in the meantime
+                if (writtenGeneration != generation) return;
+                if (committedPosition >= endPosition) return;
+                commitChannel = channel;
+                targetPosition = writePosition;
+            }
+
+            try {
+                commitChannel.force(false);
+            } catch (IOException exception) {
+                synchronized (this) {
+                    if (writtenGeneration != generation) return;
+                }
+                throw exception;
+            }
+
+            synchronized (this) {
+                if (writtenGeneration == generation && targetPosition > committedPosition)
+                    committedPosition = targetPosition;
+            }
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (pendingPayloads.isEmpty()) {
+            if (writePosition > HEADER_SIZE) {
+                // The header must hold the next sequence before the records are gone
+                writeHeader();
+                channel.truncate(HEADER_SIZE);
+                writePosition = HEADER_SIZE;
+                committedPosition = HEADER_SIZE;
+            }
+            return;
+        }
+
+        long fileSize = writePosition - HEADER_SIZE;
+        if (fileSize < MIN_COMPACTION_BYTES || fileSize < pendingBytes * 2) return;
+
+        File compactedFile = new File(file.getPath() + ".tmp");
+        RandomAccessFile compacted = new RandomAccessFile(compactedFile, "rw");
+        try {
+            compacted.setLength(0);
+            FileChannel compactedChannel = compacted.getChannel();
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) (HEADER_SIZE + pendingBytes));
+            putHeader(buffer);
+            for (Map.Entry<Long, byte[]> pending : pendingPayloads.entrySet())
+                putRecord(buffer, TYPE_PAYLOAD, pending.getKey(), pending.getValue());
+
+            buffer.flip();
+            while (buffer.hasRemaining())
+                compactedChannel.write(buffer);
+            compactedChannel.force(false);
+        } finally {
+            compacted.close();
+        }
+
+        close();
+        boolean isReplaced = compactedFile.renameTo(file);
+
+        openChannel();
+        writePosition = channel.size();
+        committedPosition = writePosition;
+
+        if (!isReplaced)
+            throw new IOException("Silent data journal could not be compacted");
+    }
+
+    private void openChannel() throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+    }
+
+    private boolean readHeader() throws IOException {
+        if (channel.size() < HEADER_SIZE) return false;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        if (header.getInt() != MAGIC || header.getShort() != VERSION) return false;
+
+        header.getShort();
+        nextSequence = Math.max(1, header.getLong());
+        return true;
+    }
+
+    private void formatFile() throws IOException {
+        channel.truncate(0);
+        writeHeader();
+        channel.force(false);
+        writePosition = HEADER_SIZE;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        putHeader(header);
+        header.flip();
+        while (header.hasRemaining())
+            channel.write(header, header.position());
+    }
+
+    private void putHeader(@NonNull ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) 0);
+        buffer.putLong(nextSequence);
+    }
+
+    private void readRecords() throws IOException {
+        long fileSize = channel.size();
+        long position = HEADER_SIZE;
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+        while (position + RECORD_HEADER_SIZE <= fileSize) {
+            recordHeader.clear();
+            readFully(recordHeader, position);
+
+            int payloadLength = recordHeader.getInt();
+            int checksum = recordHeader.getInt();
+            byte type = recordHeader.get();
+            long sequence = recordHeader.getLong();
+
+            if (payloadLength < 0 || payloadLength > MAX_PAYLOAD_BYTES) break;
+            if (position + RECORD_HEADER_SIZE + payloadLength > fileSize) break;
+
+            byte[] payload = new byte[payloadLength];
+            readFully(ByteBuffer.wrap(payload), position + RECORD_HEADER_SIZE);
+            if (checksum != computeChecksum(type, sequence, payload)) break;
+
+            if (type == TYPE_PAYLOAD) {
+                pendingPayloads.put(sequence, payload);
+                pendingBytes += RECORD_HEADER_SIZE + payloadLength;
+            } else if (type == TYPE_ACKNOWLEDGE) {
+                byte[] acknowledged = pendingPayloads.remove(sequence);
+                if (acknowledged != null)
+                    pendingBytes -= RECORD_HEADER_SIZE + acknowledged.length;
+            } else {
+                break;
+            }
+
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            position += RECORD_HEADER_SIZE + payloadLength;
+        }
+
+        writePosition = position;
+    }
+
+    private void readFully(@NonNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of the silent data journal");
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    private void writeBuffer(@NonNull ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            writePosition += channel.write(buffer, writePosition);
+    }
+
+    private void putRecord(
+            @NonNull ByteBuffer buffer,
+            byte type,
+            long sequence,
+            @NonNull byte[] payload
+    ) {
+        buffer.putInt(payload.length);
+        buffer.putInt(computeChecksum(type, sequence, payload));
+        buffer.put(type);
+        buffer.putLong(sequence);
+        buffer.put(payload);
+    }
+
+    private int computeChecksum(byte type, long sequence, @NonNull byte[] payload) {
+        crc.reset();
+        crc.update(type);
+        for (int shift = 56; shift >= 0; shift -= 8)
+            crc.update((int) (sequence >>> shift));
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,167 @@
+package me.carda.awesome_notifications_fcm.core.background;
+
+import android.content.Context;
+import android.content.Intent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.carda.awesome_notifications_fcm.core.metrics.FcmMetricsManager;
+
+import static org.junit.Assert.*;
+
+public class BackgroundExecutorManagerTest {
+
+    private static final List<TestExecutor> createdExecutors = new ArrayList<>();
+
+    private BackgroundExecutorManager manager;
+
+    public static class TestExecutor extends FcmBackgroundExecutor {
+        int deliveries;
+        volatile int releases;
+        Runnable onDelivery;
+        boolean isCompletionReported;
+        final List<Intent> unfinishedIntents = new ArrayList<>();
+
+        public TestExecutor() {
+            createdExecutors.add(this);
+        }
+
+        @Override
+        public boolean isDone() {
+            // Done executors are still reused while they are warm
+            return true;
+        }
+
+        @Override
+        public boolean isBatchSupported() {
+            return true;
+        }
+
+        @Override
+        public boolean isCompletionReported() {
+            return isCompletionReported;
+        }
+
+        void finishAll() {
+            for (Intent intent : unfinishedIntents)
+                finishBackgroundAction(null, intent);
+            unfinishedIntents.clear();
+        }
+
+        @Override
+        public boolean runBackgroundAction(Context context, Intent silentIntent) {
+            deliveries++;
+            unfinishedIntents.add(silentIntent);
+            if (onDelivery != null) onDelivery.run();
+            return true;
+        }
+
+        @Override
+        public void onIdleTimeout() {
+            releases++;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        manager = BackgroundExecutorManager.getInstance();
+        manager.releaseIdleExecutor();
+        manager.setExecutorClass(TestExecutor.class);
+        manager.setKeepAlive(BackgroundExecutorManager.DEFAULT_KEEP_ALIVE_MILLIS);
+        createdExecutors.clear();
+    }
+
+    @After
+    public void tearDown() {
+        manager.releaseIdleExecutor();
+    }
+
+    @Test
+    public void warmExecutorIsReusedUntilReleased() throws Exception {
+        FcmMetricsManager metricsManager = FcmMetricsManager.getInstance();
+        long coldStarts = metricsManager.getCounter(BackgroundExecutorManager.COUNTER_COLD_STARTS);
+        long warmDispatches = metricsManager.getCounter(BackgroundExecutorManager.COUNTER_WARM_DISPATCHES);
+
+        dispatch();
+        dispatch();
+
+        assertEquals(1, createdExecutors.size());
+        TestExecutor warmExecutor = createdExecutors.get(0);
+        assertEquals(2, warmExecutor.deliveries);
+        assertEquals(0, warmExecutor.releases);
+        assertEquals(coldStarts + 1, metricsManager.getCounter(BackgroundExecutorManager.COUNTER_COLD_STARTS));
+        assertEquals(warmDispatches + 1, metricsManager.getCounter(BackgroundExecutorManager.COUNTER_WARM_DISPATCHES));
+
+        assertTrue(manager.releaseIdleExecutor());
+        assertEquals(1, warmExecutor.releases);
+        assertFalse(manager.releaseIdleExecutor());
+
+        dispatch();
+
+        assertEquals(2, createdExecutors.size());
+        assertEquals(2, warmExecutor.deliveries);
+        assertEquals(1, warmExecutor.releases);
+        assertEquals(1, createdExecutors.get(1).deliveries);
+    }
+
+    @Test
+    public void executorIsNotReleasedWhileDispatching() throws Exception {
+        dispatch();
+        final TestExecutor executor = createdExecutors.get(0);
+        final boolean[] releasedDuringDelivery = new boolean[1];
+        executor.onDelivery = new Runnable() {
+            @Override
+            public void run() {
+                releasedDuringDelivery[0] = manager.releaseIdleExecutor();
+            }
+        };
+
+        dispatch();
+
+        assertFalse(releasedDuringDelivery[0]);
+        assertEquals(0, executor.releases);
+        assertTrue(manager.releaseIdleExecutor());
+        assertEquals(1, executor.releases);
+    }
+
+    @Test
+    public void executorIsNotReleasedWithUnfinishedActions() throws Exception {
+        dispatch();
+        TestExecutor executor = createdExecutors.get(0);
+        executor.isCompletionReported = true;
+        executor.unfinishedIntents.clear();
+        dispatch();
+        dispatch();
+
+        assertFalse(manager.releaseIdleExecutor());
+        assertEquals(0, executor.releases);
+
+        executor.finishAll();
+
+        assertTrue(manager.releaseIdleExecutor());
+        assertEquals(1, executor.releases);
+    }
+
+    @Test
+    public void zeroKeepAliveReleasesAfterDispatch() throws Exception {
+        manager.setKeepAlive(0);
+        dispatch();
+
+        TestExecutor executor = createdExecutors.get(0);
+        long deadline = System.currentTimeMillis() + 2000;
+        while (executor.releases == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        assertEquals(1, executor.releases);
+        assertFalse(manager.releaseIdleExecutor());
+    }
+
+    private void dispatch() throws Exception {
+        manager.dispatch(null, new Intent(), 1L, 2L);
+    }
+}
@@ -0,0 +1,259 @@
+package me.carda.awesome_notifications_fcm.core.builders;
+
+import android.content.Context;
+
+import com.google.firebase.messaging.NotificationParams;
+import com.google.firebase.messaging.RemoteMessage;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.carda.awesome_notifications.core.Definitions;
+import me.carda.awesome_notifications.core.models.NotificationModel;
+import me.carda.awesome_notifications.core.utils.ListUtils;
+import me.carda.awesome_notifications.core.utils.MapUtils;
+import me.carda.awesome_notifications.core.utils.StringUtils;
+import me.carda.awesome_notifications_fcm.core.FcmDefinitions;
+import me.carda.awesome_notifications_fcm.core.utils.FcmDataView;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/// Builds every push of the golden corpus through the single pass builder and
+/// through the previous decode and deepMerge path, which must result in the
+/// same notification model.
+public class FcmNotificationBuilderTest {
+
+    private static final String CORPUS = "fcm/push_content_corpus.json";
+    private static final int DEFAULT_NOTIFICATION_ID = 1;
+
+    private final Context context = mock(Context.class);
+    private final NotificationParams notificationParams = mock(NotificationParams.class);
+
+    private final FcmNotificationBuilder builder = new FcmNotificationBuilder(StringUtils.getInstance());
+
+    /// The models are compared through toMap without normalizing numbers, so
+    /// a value decoded as Integer or Long where Gson used to give a Double
+    /// must still be read the same way by the typed getters of the models
+    @Test
+    public void buildNotificationFromExtras_matchesPreviousBuildForTheWholeCorpus() throws Exception {
+        JsonArray corpus = loadCorpus();
+        assertTrue(corpus.size() > 0);
+
+        for (JsonElement element : corpus) {
+            JsonObject testCase = element.getAsJsonObject();
+            String name = testCase.get("name").getAsString();
+            Map<String, String> remoteData = getRemoteData(testCase);
+
+            int notificationId = getNotificationId(testCase);
+            RemoteMessage.Notification remoteNotification = mockRemoteNotification(testCase);
+            RemoteMessage remoteMessage = mock(RemoteMessage.class);
+            when(remoteMessage.getNotification()).thenReturn(remoteNotification);
+
+            NotificationModel expected = new NotificationModel().fromMap(
+                    buildAsBefore(
+                            new HashMap<>(remoteData),
+                            getFirebaseFields(notificationId, remoteNotification)));
+
+            NotificationModel actual = builder.buildNotificationFromExtras(
+                    context, notificationId, remoteMessage, notificationParams,
+                    FcmDataView.payloadOf(remoteData));
+
+            assertNotNull(name, actual);
+            assertEquals(name, expected.toMap(), actual.toMap());
+        }
+    }
+
+    @Test
+    public void buildNotificationFromExtras_doesNotChangeTheRemoteData() throws Exception {
+        for (JsonElement element : loadCorpus()) {
+            JsonObject testCase = element.getAsJsonObject();
+            Map<String, String> remoteData = getRemoteData(testCase);
+            Map<String, String> original = new HashMap<>(remoteData);
+
+            RemoteMessage remoteMessage = mock(RemoteMessage.class);
+            when(remoteMessage.getNotification()).thenReturn(mockRemoteNotification(testCase));
+
+            builder.buildNotificationFromExtras(
+                    context, getNotificationId(testCase), remoteMessage, notificationParams,
+                    FcmDataView.payloadOf(remoteData));
+
+            assertEquals(original, remoteData);
+        }
+    }
+
+    @Test
+    public void buildAwesomeContent_appliesAndroidOverridesLast() throws Exception {
+        Map<String, String> remoteData = new HashMap<>();
+        remoteData.put(Definitions.NOTIFICATION_MODEL_CONTENT, "{\"id\": 1, \"title\": \"Content\"}");
+        remoteData.put(FcmDefinitions.NOTIFICATION_MODEL_ANDROID, "{\"content\": {\"title\": \"Android\"}}");
+
+        Map<String, Object> notificationFields = new HashMap<>();
+        notificationFields.put("title", "Firebase");
+
+        Map<String, Object> result = builder.buildAwesomeContent(
+                FcmDataView.payloadOf(remoteData), notificationFields);
+
+        Map<?, ?> content = (Map<?, ?>) result.get(Definitions.NOTIFICATION_MODEL_CONTENT);
+        assertEquals(1, content.get("id"));
+        assertEquals("Android", content.get("title"));
+    }
+
+    /// Same steps of the builder before the single pass change: Gson decodes
+    /// every section, MapUtils.deepMerge joins the Firebase fields into the
+    /// content and the Android overrides are merged over the whole message
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> buildAsBefore(
+            Map<String, String> remoteData,
+            Map<String, Object> notificationFields
+    ) {
+        Gson gson = new Gson();
+        Type mapType = new TypeToken<Map<String, Object>>(){}.getType();
+        Type listType = new TypeToken<List<Map<String, Object>>>(){}.getType();
+
+        remoteData.remove(FcmDefinitions.NOTIFICATION_MODEL_IOS);
+
+        Map<String, Object> androidCustomData = null;
+        if (remoteData.containsKey(FcmDefinitions.NOTIFICATION_MODEL_ANDROID))
+            androidCustomData = gson.fromJson(remoteData.get(FcmDefinitions.NOTIFICATION_MODEL_ANDROID), mapType);
+
+        Map<String, Object> parsedNotificationContent =
+                gson.fromJson(remoteData.get(Definitions.NOTIFICATION_MODEL_CONTENT), mapType);
+        Map<String, Object> parsedSchedule =
+                gson.fromJson(remoteData.get(Definitions.NOTIFICATION_MODEL_SCHEDULE), mapType);
+        List<Map<String, Object>> parsedActionButtons =
+                gson.fromJson(remoteData.get(Definitions.NOTIFICATION_MODEL_BUTTONS), listType);
+        Map<String, Object> parsedLocalizations =
+                gson.fromJson(remoteData.get(Definitions.NOTIFICATION_MODEL_LOCALIZATIONS), mapType);
+
+        Map<String, String> payload = new HashMap<>(remoteData);
+        payload.remove(Definitions.NOTIFICATION_MODEL_CONTENT);
+        payload.remove(Definitions.NOTIFICATION_MODEL_SCHEDULE);
+        payload.remove(Definitions.NOTIFICATION_MODEL_BUTTONS);
+        payload.remove(Definitions.NOTIFICATION_MODEL_LOCALIZATIONS);
+        payload.remove(FcmDefinitions.NOTIFICATION_MODEL_ANDROID);
+        notificationFields.put(Definitions.NOTIFICATION_PAYLOAD, payload);
+
+        parsedNotificationContent = MapUtils.deepMerge(parsedNotificationContent, notificationFields);
+
+        Map<String, Object> parsedRemoteMessage = new HashMap<>();
+        parsedRemoteMessage.put(Definitions.NOTIFICATION_MODEL_CONTENT, parsedNotificationContent);
+
+        if (!MapUtils.isNullOrEmpty(parsedSchedule))
+            parsedRemoteMessage.put(Definitions.NOTIFICATION_MODEL_SCHEDULE, parsedSchedule);
+
+        if (!ListUtils.isNullOrEmpty(parsedActionButtons))
+            parsedRemoteMessage.put(Definitions.NOTIFICATION_MODEL_BUTTONS, parsedActionButtons);
+
+        if (!MapUtils.isNullOrEmpty(parsedLocalizations))
+            parsedRemoteMessage.put(Definitions.NOTIFICATION_MODEL_LOCALIZATIONS, parsedLocalizations);
+
+        if (androidCustomData != null)
+            parsedRemoteMessage = new HashMap<>(MapUtils.deepMerge(parsedRemoteMessage, androidCustomData));
+
+        return parsedRemoteMessage;
+    }
+
+    private static Map<String, String> getRemoteData(JsonObject testCase) {
+        Map<String, String> remoteData = new HashMap<>();
+
+        JsonObject sections = testCase.getAsJsonObject("sections");
+        for (Map.Entry<String, JsonElement> section : sections.entrySet())
+            remoteData.put(getSectionKey(section.getKey()), section.getValue().toString());
+
+        if (testCase.has("data"))
+            for (Map.Entry<String, JsonElement> entry : testCase.getAsJsonObject("data").entrySet())
+                remoteData.put(entry.getKey(), entry.getValue().getAsString());
+
+        return remoteData;
+    }
+
+    private static String getSectionKey(String name) {
+        switch (name) {
+            case "content": return Definitions.NOTIFICATION_MODEL_CONTENT;
+            case "schedule": return Definitions.NOTIFICATION_MODEL_SCHEDULE;
+            case "actionButtons": return Definitions.NOTIFICATION_MODEL_BUTTONS;
+            case "localizations": return Definitions.NOTIFICATION_MODEL_LOCALIZATIONS;
+            case "Android": return FcmDefinitions.NOTIFICATION_MODEL_ANDROID;
+            case "iOS": return FcmDefinitions.NOTIFICATION_MODEL_IOS;
+            default: throw new IllegalArgumentException("Unknown corpus section " + name);
+        }
+    }
+
+    private static int getNotificationId(JsonObject testCase) {
+        JsonObject notification = testCase.getAsJsonObject("notification");
+        return notification.has("id")
+                ? notification.get("id").getAsInt()
+                : DEFAULT_NOTIFICATION_ID;
+    }
+
+    /// The corpus describes the Firebase notification with the awesome keys
+    /// it is converted into, so an empty one means a data only push
+    private static RemoteMessage.Notification mockRemoteNotification(JsonObject testCase) {
+        JsonObject notification = testCase.getAsJsonObject("notification");
+        if (notification.size() == 0) return null;
+
+        RemoteMessage.Notification remoteNotification = mock(RemoteMessage.Notification.class);
+        when(remoteNotification.getChannelId()).thenReturn(getString(notification, Definitions.NOTIFICATION_CHANNEL_KEY));
+        when(remoteNotification.getTitle()).thenReturn(getString(notification, Definitions.NOTIFICATION_TITLE));
+        when(remoteNotification.getBody()).thenReturn(getString(notification, Definitions.NOTIFICATION_BODY));
+        when(remoteNotification.getTicker()).thenReturn(getString(notification, Definitions.NOTIFICATION_TICKER));
+        when(remoteNotification.getSticky()).thenReturn(
+                notification.has(Definitions.NOTIFICATION_AUTO_DISMISSIBLE)
+                        && !notification.get(Definitions.NOTIFICATION_AUTO_DISMISSIBLE).getAsBoolean());
+        return remoteNotification;
+    }
+
+    private static String getString(JsonObject object, String key) {
+        return object.has(key) ? object.get(key).getAsString() : null;
+    }
+
+    /// Same fields that the builder takes from the Firebase notification,
+    /// which were joined into the content before the single pass change too
+    private static Map<String, Object> getFirebaseFields(
+            int notificationId,
+            RemoteMessage.Notification remoteNotification
+    ) {
+        Map<String, Object> fields = new HashMap<>();
+        if (remoteNotification == null) return fields;
+
+        fields.put(Definitions.NOTIFICATION_ID, notificationId);
+        if (remoteNotification.getChannelId() != null)
+            fields.put(Definitions.NOTIFICATION_CHANNEL_KEY, remoteNotification.getChannelId());
+        if (remoteNotification.getTitle() != null)
+            fields.put(Definitions.NOTIFICATION_TITLE, remoteNotification.getTitle());
+        if (remoteNotification.getBody() != null)
+            fields.put(Definitions.NOTIFICATION_BODY, remoteNotification.getBody());
+        if (remoteNotification.getTicker() != null)
+            fields.put(Definitions.NOTIFICATION_TICKER, remoteNotification.getTicker());
+        fields.put(Definitions.NOTIFICATION_AUTO_DISMISSIBLE, !remoteNotification.getSticky());
+        return fields;
+    }
+
+    private JsonArray loadCorpus() throws Exception {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(CORPUS);
+        assertNotNull("Missing " + CORPUS, stream);
+
+        Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+        try {
+            return JsonParser.parseReader(reader).getAsJsonArray();
+        } finally {
+            reader.close();
+        }
+    }
+}
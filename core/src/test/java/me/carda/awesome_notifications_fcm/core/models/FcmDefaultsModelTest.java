@@ -0,0 +1,71 @@
+package me.carda.awesome_notifications_fcm.core.models;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import me.carda.awesome_notifications_fcm.core.utils.FcmBinaryCodec;
+
+import static org.junit.Assert.*;
+
+public class FcmDefaultsModelTest {
+
+    @Test
+    public void bytesRoundTrip() {
+        FcmDefaultsModel defaults = new FcmDefaultsModel(
+                Arrays.asList("key1", "key2"), 123L, -456L);
+        defaults.backgroundHandleClass = "me.carda.Handler";
+
+        FcmDefaultsModel decoded = new FcmDefaultsModel().fromBytes(defaults.toBytes());
+
+        assertNotNull(decoded);
+        assertEquals(Arrays.asList("key1", "key2"), decoded.licenseKeys);
+        assertEquals("123", decoded.reverseDartCallback);
+        assertEquals("-456", decoded.silentDataCallback);
+        assertEquals("me.carda.Handler", decoded.backgroundHandleClass);
+    }
+
+    @Test
+    public void emptyLicenseKeysRoundTrip() {
+        FcmDefaultsModel defaults = new FcmDefaultsModel(
+                Collections.<String>emptyList(), null, null);
+        FcmDefaultsModel decoded = new FcmDefaultsModel().fromBytes(defaults.toBytes());
+        assertNotNull(decoded);
+        assertEquals(new ArrayList<String>(), decoded.licenseKeys);
+
+        defaults.licenseKeys = null;
+        decoded = new FcmDefaultsModel().fromBytes(defaults.toBytes());
+        assertNotNull(decoded);
+        assertNull(decoded.licenseKeys);
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() {
+        FcmBinaryCodec.Writer writer = new FcmBinaryCodec.Writer(0);
+        writer.writeHeader(FcmBinaryCodec.TYPE_FCM_DEFAULTS, (byte) 9);
+        writer.writeString(30, "newer field");
+        writer.writeString(1, "10");
+        writer.writeLong(31, 99L);
+        writer.writeString(3, "key");
+
+        FcmDefaultsModel decoded = new FcmDefaultsModel().fromBytes(writer.toByteArray());
+
+        assertNotNull(decoded);
+        assertEquals("10", decoded.silentDataCallback);
+        assertEquals("0", decoded.reverseDartCallback);
+        assertEquals(Collections.singletonList("key"), decoded.licenseKeys);
+    }
+
+    @Test
+    public void invalidBytesReturnNull() {
+        byte[] bytes = new FcmDefaultsModel(
+                Collections.singletonList("license"), 1L, 2L).toBytes();
+
+        assertNull(new FcmDefaultsModel().fromBytes(Arrays.copyOf(bytes, bytes.length - 2)));
+        // Json defaults are read by FcmDefaultsManager from the repository instead
+        assertNull(new FcmDefaultsModel().fromBytes("{\"licenseKeys\":[]}".getBytes()));
+        assertNull(new FcmDefaultsModel().fromBytes(null));
+    }
+}
@@ -0,0 +1,78 @@
+package me.carda.awesome_notifications_fcm.core.models;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import me.carda.awesome_notifications.core.enumerators.NotificationLifeCycle;
+import me.carda.awesome_notifications.core.enumerators.NotificationSource;
+import me.carda.awesome_notifications_fcm.core.utils.FcmBinaryCodec;
+
+import static org.junit.Assert.*;
+
+public class SilentDataModelTest {
+
+    @Test
+    public void bytesRoundTrip() {
+        SilentDataModel silentData = new SilentDataModel();
+        silentData.id = -42;
+        silentData.createdSource = NotificationSource.Firebase;
+        silentData.createdLifeCycle = NotificationLifeCycle.Background;
+        silentData.createdDate = Calendar.getInstance(TimeZone.getTimeZone("America/Sao_Paulo"));
+        silentData.createdDate.setTimeInMillis(1700000000123L);
+        silentData.data.put("key", "value");
+        silentData.data.put("empty", "");
+        silentData.data.put("unicode", "ação 🚀");
+
+        SilentDataModel decoded = new SilentDataModel().fromBytes(silentData.toBytes());
+
+        assertNotNull(decoded);
+        assertEquals(Integer.valueOf(-42), decoded.id);
+        assertEquals(NotificationSource.Firebase, decoded.createdSource);
+        assertEquals(NotificationLifeCycle.Background, decoded.createdLifeCycle);
+        assertEquals(1700000000123L, decoded.createdDate.getTimeInMillis());
+        assertEquals("America/Sao_Paulo", decoded.createdDate.getTimeZone().getID());
+        assertEquals(silentData.data, decoded.data);
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() {
+        FcmBinaryCodec.Writer writer = new FcmBinaryCodec.Writer(0);
+        writer.writeHeader(FcmBinaryCodec.TYPE_SILENT_DATA, (byte) 9);
+        writer.writeBytes(40, new byte[]{ 1, 2, 3 });
+        writer.writeLong(1, 7L);
+        writer.writeLong(41, -1L);
+        writer.writeString(4, "UnknownSource");
+
+        SilentDataModel decoded = new SilentDataModel().fromBytes(writer.toByteArray());
+
+        assertNotNull(decoded);
+        assertEquals(Integer.valueOf(7), decoded.id);
+        assertNull(decoded.createdSource);
+        assertTrue(decoded.data.isEmpty());
+    }
+
+    @Test
+    public void truncatedBytesReturnNull() {
+        SilentDataModel silentData = new SilentDataModel();
+        silentData.data.put("key", "value");
+        byte[] bytes = silentData.toBytes();
+
+        assertNull(new SilentDataModel().fromBytes(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertNull(new SilentDataModel().fromBytes(new byte[0]));
+        assertNull(new SilentDataModel().fromBytes(null));
+    }
+
+    @Test
+    public void jsonBytesFallBackToJson() {
+        byte[] json = "{\"id\":5,\"key\":\"value\"}".getBytes(StandardCharsets.UTF_8);
+
+        SilentDataModel decoded = new SilentDataModel().fromBytes(json);
+
+        assertNotNull(decoded);
+        assertEquals("value", decoded.data.get("key"));
+    }
+}
@@ -0,0 +1,150 @@
+package me.carda.awesome_notifications_fcm.core.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FcmBinaryCodecTest {
+
+    private static final byte TYPE_TEST = 9;
+
+    @Test
+    public void fieldsRoundTrip() throws Exception {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("key", "value");
+        values.put("accent", "ação 🚀");
+
+        FcmBinaryCodec.Writer writer = new FcmBinaryCodec.Writer(0);
+        writer.writeHeader(TYPE_TEST, (byte) 3);
+        writer.writeLong(1, -1L);
+        writer.writeLong(2, Long.MAX_VALUE);
+        writer.writeString(3, "text");
+        writer.writeStringList(4, Arrays.asList("a", null, "b"));
+        writer.writeStringMap(5, values);
+        byte[] bytes = writer.toByteArray();
+
+        assertTrue(FcmBinaryCodec.isBinary(bytes));
+
+        FcmBinaryCodec.Reader reader = new FcmBinaryCodec.Reader(bytes);
+        assertEquals(3, reader.readHeader(TYPE_TEST));
+
+        assertTrue(reader.nextField());
+        assertEquals(1, reader.getTag());
+        assertEquals(-1L, reader.readLong());
+
+        assertTrue(reader.nextField());
+        assertEquals(2, reader.getTag());
+        assertEquals(Long.MAX_VALUE, reader.readLong());
+
+        assertTrue(reader.nextField());
+        assertEquals(3, reader.getTag());
+        assertEquals("text", reader.readString());
+
+        assertTrue(reader.nextField());
+        assertEquals("a", reader.readString());
+        assertTrue(reader.nextField());
+        assertEquals(4, reader.getTag());
+        assertEquals("b", reader.readString());
+
+        Map<String, String> decoded = new HashMap<>();
+        while (reader.nextField()) {
+            assertEquals(5, reader.getTag());
+            reader.readStringMapEntry(decoded);
+        }
+        assertEquals(values, decoded);
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() throws Exception {
+        FcmBinaryCodec.Writer writer = new FcmBinaryCodec.Writer(0);
+        writer.writeHeader(TYPE_TEST, (byte) 2);
+        writer.writeLong(20, 12345L);
+        writer.writeString(1, "known");
+        writer.writeBytes(21, new byte[300]);
+        writer.writeLong(2, 7L);
+
+        FcmBinaryCodec.Reader reader = new FcmBinaryCodec.Reader(writer.toByteArray());
+        reader.readHeader(TYPE_TEST);
+
+        String known = null;
+        Long number = null;
+        while (reader.nextField()) {
+            switch (reader.getTag()) {
+                case 1: known = reader.readString(); break;
+                case 2: number = reader.readLong(); break;
+                default: reader.skipField();
+            }
+        }
+        assertEquals("known", known);
+        assertEquals(Long.valueOf(7L), number);
+    }
+
+    @Test
+    public void truncatedDataThrows() throws Exception {
+        FcmBinaryCodec.Writer writer = new FcmBinaryCodec.Writer(0);
+        writer.writeHeader(TYPE_TEST, (byte) 1);
+        writer.writeString(1, "truncated value");
+        byte[] bytes = writer.toByteArray();
+
+        FcmBinaryCodec.Reader reader = new FcmBinaryCodec.Reader(Arrays.copyOf(bytes, bytes.length - 4));
+        reader.readHeader(TYPE_TEST);
+        assertTrue(reader.nextField());
+        try {
+            reader.readString();
+            fail("Truncated string was read");
+        } catch (IOException expected) {
+        }
+
+        reader = new FcmBinaryCodec.Reader(new byte[]{ FcmBinaryCodec.MAGIC, TYPE_TEST, 1, (byte) 0x80 });
+        reader.readHeader(TYPE_TEST);
+        try {
+            reader.nextField();
+            fail("Truncated varint was read");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void unexpectedHeaderThrows() {
+        try {
+            new FcmBinaryCodec.Reader(new byte[]{ FcmBinaryCodec.MAGIC, 1, 1 }).readHeader(TYPE_TEST);
+            fail("Unexpected model type was accepted");
+        } catch (IOException expected) {
+        }
+
+        byte[] json = "{\"a\":1}".getBytes();
+        assertFalse(FcmBinaryCodec.isBinary(json));
+        try {
+            new FcmBinaryCodec.Reader(json).readHeader(TYPE_TEST);
+            fail("Json was read as a binary model");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void framesRoundTrip() throws Exception {
+        byte[][] frames = new byte[][]{ new byte[]{ 1, 2, 3 }, new byte[0], new byte[200] };
+
+        byte[][] split = FcmBinaryCodec.splitFrames(FcmBinaryCodec.joinFrames(frames));
+
+        assertEquals(frames.length, split.length);
+        for (int i = 0; i < frames.length; i++)
+            assertArrayEquals(frames[i], split[i]);
+    }
+
+    @Test
+    public void truncatedFramesThrow() {
+        byte[] joined = FcmBinaryCodec.joinFrames(new byte[][]{ new byte[]{ 1, 2, 3 }, new byte[]{ 4, 5 } });
+        try {
+            FcmBinaryCodec.splitFrames(Arrays.copyOf(joined, joined.length - 1));
+            fail("Truncated frames were split");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package me.carda.awesome_notifications_fcm.core.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FcmJsonDecoderTest {
+
+    @Test
+    public void integralNumbers_areDecodedAsIntegerOrLong() throws Exception {
+        Map<String, Object> map = FcmJsonDecoder.decodeMap(
+                "{\"small\": 1, \"negative\": -7, \"large\": 9999999999}");
+
+        assertEquals(1, map.get("small"));
+        assertEquals(-7, map.get("negative"));
+        assertEquals(9999999999L, map.get("large"));
+    }
+
+    @Test
+    public void fractionalAndExponentNumbers_stayDouble() throws Exception {
+        Map<String, Object> map = FcmJsonDecoder.decodeMap(
+                "{\"fraction\": 1.0, \"half\": 0.5, \"exponent\": 1e3, \"huge\": 99999999999999999999}");
+
+        assertEquals(1.0, map.get("fraction"));
+        assertEquals(0.5, map.get("half"));
+        assertEquals(1000.0, map.get("exponent"));
+        assertTrue(map.get("huge") instanceof Double);
+    }
+
+    @Test
+    public void nestedValues_areDecodedIntoMapsAndLists() throws Exception {
+        Map<String, Object> map = FcmJsonDecoder.decodeMap(
+                "{\"content\": {\"id\": 10, \"title\": \"Hi\"}, \"buttons\": [{\"key\": \"OK\"}, 2, true, null]}");
+
+        Map<?, ?> content = (Map<?, ?>) map.get("content");
+        assertEquals(10, content.get("id"));
+        assertEquals("Hi", content.get("title"));
+
+        List<?> buttons = (List<?>) map.get("buttons");
+        assertEquals(4, buttons.size());
+        assertEquals("OK", ((Map<?, ?>) buttons.get(0)).get("key"));
+        assertEquals(2, buttons.get(1));
+        assertEquals(true, buttons.get(2));
+        assertNull(buttons.get(3));
+    }
+
+    @Test
+    public void nullJson_returnsNull() throws Exception {
+        assertNull(FcmJsonDecoder.decodeMap(null));
+        assertNull(FcmJsonDecoder.decodeMap("null"));
+        assertNull(FcmJsonDecoder.decodeList(null));
+    }
+
+    @Test
+    public void decodeMapList_ignoresElementsThatAreNotObjects() throws Exception {
+        List<Map<String, Object>> list = FcmJsonDecoder.decodeMapList("[{\"a\": 1}, 2, \"b\", {\"c\": 3}]");
+
+        assertEquals(2, list.size());
+        assertEquals(1, list.get(0).get("a"));
+        assertEquals(3, list.get(1).get("c"));
+    }
+
+    @Test
+    public void findValue_followsThePath() {
+        String json = "{\"other\": [1, 2], \"content\": {\"payload\": {\"key\": \"value\"}, \"id\": 5}}";
+
+        assertEquals(5, FcmJsonDecoder.findValue(json, "content", "id"));
+        assertEquals("value", FcmJsonDecoder.findValue(json, "content", "payload", "key"));
+    }
+
+    @Test
+    public void findValue_returnsNullForMissingPathOrInvalidJson() {
+        String json = "{\"content\": {\"id\": 5}}";
+
+        assertNull(FcmJsonDecoder.findValue(json, "content", "title"));
+        assertNull(FcmJsonDecoder.findValue(json, "content", "id", "deeper"));
+        assertNull(FcmJsonDecoder.findValue("{\"content\": {\"id\": ", "content", "id"));
+        assertNull(FcmJsonDecoder.findValue("not json", "content"));
+        assertNull(FcmJsonDecoder.findValue(null, "content"));
+    }
+
+    @Test
+    public void decodeInto_deepMergesOverTheTarget() throws Exception {
+        Map<String, Object> content = new HashMap<>();
+        content.put("id", 1);
+        content.put("title", "Old");
+        List<Object> tags = new ArrayList<>(Arrays.asList("a", "b"));
+
+        Map<String, Object> target = new HashMap<>();
+        target.put("content", content);
+        target.put("tags", tags);
+        target.put("kept", "yes");
+
+        FcmJsonDecoder.decodeInto(target,
+                "{\"content\": {\"title\": \"New\", \"body\": \"Body\"}, \"tags\": [\"b\", \"c\"], \"added\": 2.5}");
+
+        assertSame(content, target.get("content"));
+        assertEquals(1, content.get("id"));
+        assertEquals("New", content.get("title"));
+        assertEquals("Body", content.get("body"));
+        assertEquals(Arrays.asList("a", "b", "c"), target.get("tags"));
+        assertEquals("yes", target.get("kept"));
+        assertEquals(2.5, target.get("added"));
+    }
+
+    @Test
+    public void decodeInto_replacesValuesOfDifferentShape() throws Exception {
+        Map<String, Object> target = new HashMap<>();
+        target.put("content", "text");
+        target.put("list", 3);
+
+        FcmJsonDecoder.decodeInto(target, "{\"content\": {\"id\": 1}, \"list\": [1]}");
+
+        assertEquals(1, ((Map<?, ?>) target.get("content")).get("id"));
+        assertEquals(Arrays.asList(1), target.get("list"));
+    }
+}
@@ -0,0 +1,206 @@
+package me.carda.awesome_notifications_fcm.core.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SilentDataJournalFileTest {
+
+    private File file;
+    private SilentDataJournalFile journal;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("silent_journal", ".bin");
+        assertTrue(file.delete());
+        journal = new SilentDataJournalFile(file);
+    }
+
+    @After
+    public void tearDown() {
+        journal.close();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        //noinspection ResultOfMethodCallIgnored
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    @Test
+    public void open_replaysOnlyTheUnacknowledgedPayloadsInOrder() throws Exception {
+        assertTrue(journal.open().isEmpty());
+
+        long[] sequences = journal.append(payloads("a", "b", "c", "d"));
+        journal.acknowledge(new long[]{sequences[1], sequences[3]});
+        journal.close();
+
+        List<SilentDataJournalFile.Entry> entries = journal.open();
+        assertEquals(2, entries.size());
+        assertEquals(sequences[0], entries.get(0).sequence);
+        assertEquals("a", text(entries.get(0).payload));
+        assertEquals(sequences[2], entries.get(1).sequence);
+        assertEquals("c", text(entries.get(1).payload));
+        assertEquals(2, journal.getPendingCount());
+    }
+
+    @Test
+    public void open_cutsOffATornRecord() throws Exception {
+        journal.open();
+        journal.append(payloads("first", "second"));
+        journal.close();
+
+        long intactLength = file.length();
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            // Last record loses its final bytes, as if the process died while writing it
+            raw.setLength(intactLength - 3);
+        } finally {
+            raw.close();
+        }
+
+        List<SilentDataJournalFile.Entry> entries = journal.open();
+        assertEquals(1, entries.size());
+        assertEquals("first", text(entries.get(0).payload));
+        assertTrue(file.length() < intactLength - 3);
+
+        // New records are written right after the last valid one
+        journal.append(payloads("third"));
+        journal.close();
+
+        entries = journal.open();
+        assertEquals(2, entries.size());
+        assertEquals("first", text(entries.get(0).payload));
+        assertEquals("third", text(entries.get(1).payload));
+    }
+
+    @Test
+    public void open_cutsOffACorruptedRecordAndEverythingAfterIt() throws Exception {
+        journal.open();
+        journal.append(payloads("first"));
+        long corruptedPosition = file.length() + 20;
+        journal.append(payloads("second", "third"));
+        journal.close();
+
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            raw.seek(corruptedPosition);
+            raw.write(raw.read() ^ 0xFF);
+        } finally {
+            raw.close();
+        }
+
+        List<SilentDataJournalFile.Entry> entries = journal.open();
+        assertEquals(1, entries.size());
+        assertEquals("first", text(entries.get(0).payload));
+    }
+
+    @Test
+    public void acknowledge_compactsTheFileKeepingThePendingPayloads() throws Exception {
+        journal.open();
+
+        byte[] large = new byte[1024];
+        byte[][] batch = new byte[100][];
+        for (int i = 0; i < batch.length; i++) batch[i] = large;
+        long[] sequences = journal.append(batch);
+        byte[][] kept = payloads("kept 1", "kept 2");
+        long[] keptSequences = journal.append(kept);
+
+        long fullLength = file.length();
+        journal.acknowledge(sequences);
+        assertTrue(file.length() < fullLength / 10);
+        assertEquals(2, journal.getPendingCount());
+
+        // Writes after the compaction go to the compacted file
+        long[] lastSequence = journal.append(payloads("after"));
+        journal.close();
+
+        List<SilentDataJournalFile.Entry> entries = journal.open();
+        assertEquals(3, entries.size());
+        assertEquals(keptSequences[0], entries.get(0).sequence);
+        assertEquals("kept 1", text(entries.get(0).payload));
+        assertEquals(keptSequences[1], entries.get(1).sequence);
+        assertEquals(lastSequence[0], entries.get(2).sequence);
+        assertEquals("after", text(entries.get(2).payload));
+    }
+
+    @Test
+    public void sequences_areNotReusedAfterTheJournalIsEmptied() throws Exception {
+        journal.open();
+        long[] first = journal.append(payloads("a", "b"));
+        journal.acknowledge(first);
+
+        long[] second = journal.append(payloads("c"));
+        assertTrue(second[0] > first[1]);
+
+        journal.acknowledge(second);
+        journal.close();
+
+        assertTrue(journal.open().isEmpty());
+        long[] third = journal.append(payloads("d"));
+        assertTrue(third[0] > second[0]);
+    }
+
+    @Test
+    public void sequences_areNotReusedAfterACompaction() throws Exception {
+        journal.open();
+        byte[][] batch = new byte[100][];
+        for (int i = 0; i < batch.length; i++) batch[i] = new byte[1024];
+        long[] sequences = journal.append(batch);
+
+        long[] acknowledged = new long[sequences.length - 1];
+        System.arraycopy(sequences, 0, acknowledged, 0, acknowledged.length);
+        journal.acknowledge(acknowledged);
+        journal.acknowledge(new long[]{sequences[sequences.length - 1]});
+        journal.close();
+
+        assertTrue(journal.open().isEmpty());
+        assertTrue(journal.append(payloads("next"))[0] > sequences[sequences.length - 1]);
+    }
+
+    @Test
+    public void trimTo_acknowledgesTheOldestPayloads() throws Exception {
+        journal.open();
+        long[] sequences = journal.append(payloads("1", "2", "3", "4"));
+
+        List<Long> dropped = journal.trimTo(1);
+        assertEquals(3, dropped.size());
+        assertEquals(sequences[0], (long) dropped.get(0));
+        journal.close();
+
+        List<SilentDataJournalFile.Entry> entries = journal.open();
+        assertEquals(1, entries.size());
+        assertEquals("4", text(entries.get(0).payload));
+    }
+
+    @Test
+    public void open_formatsAnUnknownFile() throws Exception {
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            raw.write("not a journal at all".getBytes(StandardCharsets.UTF_8));
+        } finally {
+            raw.close();
+        }
+
+        assertTrue(journal.open().isEmpty());
+        journal.append(payloads("fresh"));
+        journal.close();
+        assertEquals("fresh", text(journal.open().get(0).payload));
+    }
+
+    private static byte[][] payloads(String... values) {
+        byte[][] payloads = new byte[values.length][];
+        for (int i = 0; i < values.length; i++)
+            payloads[i] = values[i].getBytes(StandardCharsets.UTF_8);
+        return payloads;
+    }
+
+    private static String text(byte[] payload) {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}